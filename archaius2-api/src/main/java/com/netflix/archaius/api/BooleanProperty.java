@@ -0,0 +1,17 @@
+package com.netflix.archaius.api;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link Property} of a primitive boolean that is never null.  {@link #getAsBoolean()} returns the current value, or the
+ * default value when the property is not set, without boxing.
+ * 
+ * @see PropertyRepository#getBoolean(String, boolean)
+ */
+public interface BooleanProperty extends Property<Boolean>, BooleanSupplier {
+    /**
+     * @return The most recent value for the property or the default value if not set
+     */
+    @Override
+    boolean getAsBoolean();
+}
@@ -238,4 +238,15 @@ public interface Config extends PropertySource {
     default <T> T resolve(String value, Class<T> type) {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Capture the current properties of this config.  The returned config is immutable and all
+     * reads from it, including interpolation, are consistent with a single version of this config
+     * regardless of concurrent updates.
+     * 
+     * @return Immutable snapshot of this config
+     */
+    default Config snapshot() {
+        throw new UnsupportedOperationException();
+    }
 }
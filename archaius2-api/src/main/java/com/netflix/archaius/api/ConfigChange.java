@@ -0,0 +1,248 @@
+package com.netflix.archaius.api;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable description of the keys affected by a configuration update.  A change is either 'known',
+ * in which case {@link #getKeys()} contains every key whose raw value may have been added, updated or
+ * removed, or 'unknown', in which case the listener must assume that any key may have changed.
+ * <p>
+ * Configs that know the raw values before and after the update also include them, in which case
+ * {@link #hasValues()} is true and the affected keys are further split into added, updated and
+ * removed keys.  Every change is assigned a version from a single sequence, so that a listener can
+ * tell which of two changes happened last.  A change is created once per update and the same
+ * instance is delivered to all listeners.
+ *
+ * @see ConfigChangeListener
+ */
+public final class ConfigChange {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private static final ConfigChange EMPTY = new ConfigChange(0, Collections.emptySet(), null, null);
+
+    /**
+     * @return Change for which the affected keys could not be determined
+     */
+    public static ConfigChange unknown() {
+        return new ConfigChange(VERSIONS.incrementAndGet(), null, null, null);
+    }
+
+    /**
+     * @return Change that did not affect any key
+     */
+    public static ConfigChange empty() {
+        return EMPTY;
+    }
+
+    public static ConfigChange of(String key) {
+        return new ConfigChange(VERSIONS.incrementAndGet(), Collections.singleton(key), null, null);
+    }
+
+    public static ConfigChange of(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return EMPTY;
+        }
+        return new ConfigChange(VERSIONS.incrementAndGet(), Collections.unmodifiableSet(new HashSet<>(keys)), null, null);
+    }
+
+    /**
+     * @param previous Raw value before the update or null if the key was added
+     * @param current Raw value after the update or null if the key was removed
+     */
+    public static ConfigChange of(String key, Object previous, Object current) {
+        return new ConfigChange(
+                VERSIONS.incrementAndGet(),
+                Collections.singleton(key),
+                Collections.singletonMap(key, previous),
+                Collections.singletonMap(key, current));
+    }
+
+    /**
+     * Describe the update of the given keys between two snapshots of raw values.  Only the values of
+     * those keys are retained.
+     *
+     * @param keys Keys that were added, updated or removed
+     * @param previous Raw values before the update
+     * @param current Raw values after the update
+     */
+    public static ConfigChange of(Collection<String> keys, Map<String, ?> previous, Map<String, ?> current) {
+        if (keys.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, Object> previousValues = new HashMap<>();
+        Map<String, Object> currentValues = new HashMap<>();
+        for (String key : keys) {
+            previousValues.put(key, previous.get(key));
+            currentValues.put(key, current.get(key));
+        }
+        return new ConfigChange(
+                VERSIONS.incrementAndGet(),
+                Collections.unmodifiableSet(new HashSet<>(keys)),
+                previousValues,
+                currentValues);
+    }
+
+    /**
+     * Determine the keys that were added, updated or removed between two snapshots of raw values
+     *
+     * @param previous Raw values before the update
+     * @param current Raw values after the update
+     * @return Change with the keys whose value differs between the snapshots, including their values
+     */
+    public static ConfigChange between(Map<String, ?> previous, Map<String, ?> current) {
+        Set<String> keys = new HashSet<>();
+        previous.forEach((key, value) -> {
+            if (!Objects.equals(value, current.get(key))) {
+                keys.add(key);
+            }
+        });
+        current.keySet().forEach(key -> {
+            if (!previous.containsKey(key)) {
+                keys.add(key);
+            }
+        });
+        return of(keys, previous, current);
+    }
+
+    /**
+     * Combine two consecutive changes into a single change equivalent to both.  Values are retained
+     * if both changes have them, with the previous value of each key taken from the first change
+     * affecting it and the current value from the last.
+     *
+     * @param first The earlier change
+     * @param second The later change
+     */
+    public static ConfigChange combine(ConfigChange first, ConfigChange second) {
+        if (!first.isKnown() || !second.isKnown()) {
+            return new ConfigChange(Math.max(first.version, second.version), null, null, null);
+        }
+        if (first.isEmpty() || second.isEmpty()) {
+            return first.isEmpty() ? second : first;
+        }
+        Set<String> keys = new HashSet<>(first.keys);
+        keys.addAll(second.keys);
+        Map<String, Object> previousValues = null;
+        Map<String, Object> currentValues = null;
+        if (first.hasValues() && second.hasValues()) {
+            previousValues = new HashMap<>(second.previousValues);
+            previousValues.putAll(first.previousValues);
+            currentValues = new HashMap<>(first.currentValues);
+            currentValues.putAll(second.currentValues);
+        }
+        return new ConfigChange(
+                Math.max(first.version, second.version),
+                Collections.unmodifiableSet(keys),
+                previousValues,
+                currentValues);
+    }
+
+    private final long version;
+    private final Set<String> keys;
+    private final Map<String, Object> previousValues;
+    private final Map<String, Object> currentValues;
+
+    private ConfigChange(long version, Set<String> keys, Map<String, Object> previousValues, Map<String, Object> currentValues) {
+        this.version = version;
+        this.keys = keys;
+        this.previousValues = previousValues;
+        this.currentValues = currentValues;
+    }
+
+    /**
+     * @return True if the affected keys are known or false if any key may have changed
+     */
+    public boolean isKnown() {
+        return keys != null;
+    }
+
+    /**
+     * @return True if the change is known to not affect any key
+     */
+    public boolean isEmpty() {
+        return keys != null && keys.isEmpty();
+    }
+
+    /**
+     * @return Immutable set of affected keys.  Only meaningful when {@link #isKnown()} is true.
+     */
+    public Set<String> getKeys() {
+        return keys == null ? Collections.emptySet() : keys;
+    }
+
+    /**
+     * @return Version of this change, which is greater than that of every change created before it.
+     *      The empty change has version 0.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return True if the raw values before and after the update are known for all affected keys
+     */
+    public boolean hasValues() {
+        return previousValues != null;
+    }
+
+    /**
+     * @return Keys without a value before the update.  Only meaningful when {@link #hasValues()} is true.
+     */
+    public Set<String> getAddedKeys() {
+        return filterKeys(true, false);
+    }
+
+    /**
+     * @return Keys with a different value after the update.  Only meaningful when {@link #hasValues()} is true.
+     */
+    public Set<String> getUpdatedKeys() {
+        return filterKeys(false, false);
+    }
+
+    /**
+     * @return Keys without a value after the update.  Only meaningful when {@link #hasValues()} is true.
+     */
+    public Set<String> getRemovedKeys() {
+        return filterKeys(false, true);
+    }
+
+    private Set<String> filterKeys(boolean added, boolean removed) {
+        if (previousValues == null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (String key : keys) {
+            Object previous = previousValues.get(key);
+            Object current = currentValues.get(key);
+            if ((previous == null) == added && (current == null) == removed && !Objects.equals(previous, current)) {
+                result.add(key);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * @return Raw value of the key before the update, or null if it had no value or values are not known
+     */
+    public Object getPreviousValue(String key) {
+        return previousValues == null ? null : previousValues.get(key);
+    }
+
+    /**
+     * @return Raw value of the key after the update, or null if it has no value or values are not known
+     */
+    public Object getCurrentValue(String key) {
+        return currentValues == null ? null : currentValues.get(key);
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigChange [version=" + version + ", keys=" + (keys == null ? "unknown" : keys) + "]";
+    }
+}
@@ -0,0 +1,21 @@
+package com.netflix.archaius.api;
+
+/**
+ * {@link ConfigListener} that is able to make use of the set of keys affected by an update.
+ * Configs that track the delta of an update will call {@link #onConfigUpdated(Config, ConfigChange)}
+ * instead of {@link #onConfigUpdated(Config)}.  Configs that don't track the delta will continue
+ * to call {@link #onConfigUpdated(Config)}, which should be treated as {@link ConfigChange#unknown()}.
+ */
+public interface ConfigChangeListener extends ConfigListener {
+    /**
+     * Notify the listener that the configuration of a child has changed
+     * @param config
+     * @param change The keys affected by the update
+     */
+    void onConfigUpdated(Config config, ConfigChange change);
+    
+    @Override
+    default void onConfigUpdated(Config config) {
+        onConfigUpdated(config, ConfigChange.unknown());
+    }
+}
@@ -0,0 +1,17 @@
+package com.netflix.archaius.api;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * {@link Property} of a primitive double that is never null.  {@link #getAsDouble()} returns the current value, or the
+ * default value when the property is not set, without boxing.
+ * 
+ * @see PropertyRepository#getDouble(String, double)
+ */
+public interface DoubleProperty extends Property<Double>, DoubleSupplier {
+    /**
+     * @return The most recent value for the property or the default value if not set
+     */
+    @Override
+    double getAsDouble();
+}
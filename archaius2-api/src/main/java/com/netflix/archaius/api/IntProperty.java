@@ -0,0 +1,17 @@
+package com.netflix.archaius.api;
+
+import java.util.function.IntSupplier;
+
+/**
+ * {@link Property} of a primitive int that is never null.  {@link #getAsInt()} returns the current value, or the
+ * default value when the property is not set, without boxing.
+ * 
+ * @see PropertyRepository#getInt(String, int)
+ */
+public interface IntProperty extends Property<Integer>, IntSupplier {
+    /**
+     * @return The most recent value for the property or the default value if not set
+     */
+    @Override
+    int getAsInt();
+}
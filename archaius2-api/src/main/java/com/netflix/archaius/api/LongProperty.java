@@ -0,0 +1,17 @@
+package com.netflix.archaius.api;
+
+import java.util.function.LongSupplier;
+
+/**
+ * {@link Property} of a primitive long that is never null.  {@link #getAsLong()} returns the current value, or the
+ * default value when the property is not set, without boxing.
+ * 
+ * @see PropertyRepository#getLong(String, long)
+ */
+public interface LongProperty extends Property<Long>, LongSupplier {
+    /**
+     * @return The most recent value for the property or the default value if not set
+     */
+    @Override
+    long getAsLong();
+}
@@ -17,4 +17,49 @@ public interface PropertyRepository {
     <T> Property<T> get(String key, Class<T> type);
 
     <T> Property<T> get(String key, Type type);
+    
+    /**
+     * Fetch a primitive int property that reads the current value without boxing.
+     * 
+     * @param key   Property name
+     * @param defaultValue Value returned when the property is not set or can't be parsed
+     * @return
+     */
+    default IntProperty getInt(String key, int defaultValue) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Fetch a primitive long property that reads the current value without boxing.
+     * @see #getInt(String, int)
+     */
+    default LongProperty getLong(String key, long defaultValue) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Fetch a primitive double property that reads the current value without boxing.
+     * @see #getInt(String, int)
+     */
+    default DoubleProperty getDouble(String key, double defaultValue) {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Fetch a primitive boolean property that reads the current value without boxing.
+     * @see #getInt(String, int)
+     */
+    default BooleanProperty getBoolean(String key, boolean defaultValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Capture the current state of the backing configuration so that several properties may be read
+     * consistently from one version of it.
+     * 
+     * @return Snapshot of the backing configuration
+     */
+    default PropertySnapshot snapshot() {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -0,0 +1,46 @@
+package com.netflix.archaius.api;
+
+/**
+ * Immutable version of the configuration backing a {@link PropertyRepository}.  Properties read
+ * through a snapshot all reflect the same version of the configuration, even while it is being
+ * updated concurrently.
+ * 
+ * <pre>
+ * {@code
+ * try (PropertySnapshot.Scope scope = repository.snapshot().pin()) {
+ *     // Both reads reflect the same version of the configuration
+ *     int timeout = timeoutProperty.get();
+ *     int retries = retriesProperty.get();
+ * }
+ * }
+ * </pre>
+ */
+public interface PropertySnapshot {
+    /**
+     * Scope during which a snapshot is pinned to the current thread
+     */
+    interface Scope extends AutoCloseable {
+        /**
+         * Unpin the snapshot, restoring any snapshot that was pinned when this scope was opened
+         */
+        @Override
+        void close();
+    }
+    
+    /**
+     * @return Immutable config from which the snapshot's values are read
+     */
+    Config getConfig();
+    
+    /**
+     * @return Value the property has in this snapshot
+     */
+    <T> T get(Property<T> property);
+    
+    /**
+     * Pin this snapshot to the current thread so that calls to {@link Property#get()} on properties
+     * of the same repository return values from this snapshot until the returned scope is closed.
+     * Scopes must be closed on the thread that opened them, in reverse order.
+     */
+    Scope pin();
+}
@@ -25,6 +25,14 @@ public interface CompositeConfig extends Config {
          */
         T visitChild(String name, Config child);
     }
+
+    /**
+     * Changes to apply to a composite as a single batch
+     */
+    @FunctionalInterface
+    static interface Updates {
+        void apply(CompositeConfig config) throws ConfigException;
+    }
     
     /**
      * Add a named configuration.  The newly added configuration takes precedence over all
@@ -53,7 +61,8 @@ public interface CompositeConfig extends Config {
      * Add a map of named configurations.  The newly added configurations takes precedence over all
      * previously added configurations.  Duplicate configurations are not allowed
      * <p>
-     * This will trigger an onConfigAdded event.
+     * This will trigger an onConfigAdded event, or a single onConfigUpdated event for all
+     * configurations in implementations that add them in bulk.
      *
      * @param configs a map of [configName, config]
      * @throws ConfigException
@@ -94,4 +103,17 @@ public interface CompositeConfig extends Config {
      */
     Collection<String> getConfigNames();
 
+    /**
+     * Apply a batch of changes, such as adding and replacing children, as a single update.
+     * Implementations may defer rebuilding the merged properties and notifying listeners until
+     * the batch completes, in which case a single onConfigUpdated event is triggered instead of
+     * an event per change.
+     *
+     * @param updates Changes to apply to this config
+     * @throws ConfigException
+     */
+    default void batchUpdates(Updates updates) throws ConfigException {
+        updates.apply(this);
+    }
+
 }
@@ -6,6 +6,7 @@ import com.netflix.archaius.api.exceptions.ConfigException;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Composite Config where the override order is driven by Layer keys.
@@ -36,6 +37,34 @@ public interface LayeredConfig extends Config {
     void addConfig(Layer layer, Config config, int position);
     
     Optional<Config> removeConfig(Layer layer, String name);
+
+    /**
+     * Add Configs at the specified Layer in order, as if each was added with
+     * {@link #addConfig(Layer, Config)} in a single {@link #batchUpdates(Consumer) batch}.
+     *
+     * @param layer
+     * @param configs
+     */
+    default void addConfigs(Layer layer, Collection<Config> configs) {
+        batchUpdates(layered -> configs.forEach(config -> layered.addConfig(layer, config)));
+    }
+
+    /**
+     * Replace all Configs at the specified Layer with the specified Configs in a single
+     * {@link #batchUpdates(Consumer) batch}, so that readers observe either the previous
+     * or the new Configs at that layer.
+     *
+     * @param layer
+     * @param configs
+     */
+    default void replaceConfigs(Layer layer, Collection<Config> configs) {
+        batchUpdates(layered -> {
+            for (Config config : layered.getConfigsAtLayer(layer)) {
+                layered.removeConfig(layer, config.getName());
+            }
+            configs.forEach(config -> layered.addConfig(layer, config));
+        });
+    }
     
     /**
      * Return all property sources at a layer
@@ -43,4 +72,16 @@ public interface LayeredConfig extends Config {
      * @return Immutable list of all property sources at the specified layer.
      */
     Collection<Config> getConfigsAtLayer(Layer layer);
+
+    /**
+     * Apply a batch of changes, such as adding and removing configs, as a single update.
+     * Implementations may defer rebuilding the merged properties and notifying listeners until
+     * the batch completes, in which case a single onConfigUpdated event is triggered instead of
+     * an event per change.
+     *
+     * @param updates Changes to apply to this config
+     */
+    default void batchUpdates(Consumer<LayeredConfig> updates) {
+        updates.accept(this);
+    }
 }
\ No newline at end of file
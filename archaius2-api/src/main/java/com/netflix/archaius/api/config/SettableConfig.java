@@ -16,6 +16,7 @@
 package com.netflix.archaius.api.config;
 
 import java.util.Properties;
+import java.util.function.Consumer;
 
 import com.netflix.archaius.api.Config;
 
@@ -26,6 +27,15 @@ import com.netflix.archaius.api.Config;
  *
  */
 public interface SettableConfig extends Config {
+    /**
+     * Property changes to apply as part of a single {@link SettableConfig#update(Consumer) update}
+     */
+    interface Transaction {
+        <T> Transaction set(String propName, T propValue);
+
+        Transaction clear(String propName);
+    }
+
     /**
      * Copy all properties from the 'config' argument into this config.
      * @param config
@@ -52,4 +62,31 @@ public interface SettableConfig extends Config {
      * @param propName
      */
     void clearProperty(String propName);
+
+    /**
+     * Set and clear a batch of properties as a single update, for example
+     * <pre>
+     * {@code
+     * config.update(tx -> tx.set("foo", "bar").clear("baz"));
+     * }
+     * </pre>
+     * Implementations may publish all changes at once with a single notification.  The default
+     * implementation applies each change as it is made.
+     * @param updates
+     */
+    default void update(Consumer<Transaction> updates) {
+        updates.accept(new Transaction() {
+            @Override
+            public <T> Transaction set(String propName, T propValue) {
+                setProperty(propName, propValue);
+                return this;
+            }
+
+            @Override
+            public Transaction clear(String propName) {
+                clearProperty(propName);
+                return this;
+            }
+        });
+    }
 }
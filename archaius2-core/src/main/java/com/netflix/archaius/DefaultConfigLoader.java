@@ -26,8 +26,8 @@ import com.netflix.archaius.api.exceptions.ConfigException;
 import com.netflix.archaius.cascade.NoCascadeStrategy;
 import com.netflix.archaius.config.DefaultCompositeConfig;
 import com.netflix.archaius.config.MapConfig;
-import com.netflix.archaius.interpolate.CommonsStrInterpolator;
 import com.netflix.archaius.interpolate.ConfigStrLookup;
+import com.netflix.archaius.interpolate.DefaultStrInterpolator;
 import com.netflix.archaius.readers.PropertiesConfigReader;
 
 import org.slf4j.Logger;
@@ -58,7 +58,7 @@ public class DefaultConfigLoader implements ConfigLoader {
                                                             return null;
                                                         }
                                                     };
-    private static final StrInterpolator DEFAULT_INTERPOLATOR = CommonsStrInterpolator.INSTANCE;
+    private static final StrInterpolator DEFAULT_INTERPOLATOR = DefaultStrInterpolator.INSTANCE;
                                                     
     public static class Builder {
         private Set<ConfigReader>  loaders         = new HashSet<ConfigReader>();
@@ -1,29 +1,54 @@
 package com.netflix.archaius;
 
+import com.netflix.archaius.api.BooleanProperty;
 import com.netflix.archaius.api.Config;
-import com.netflix.archaius.api.ConfigListener;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
+import com.netflix.archaius.api.DoubleProperty;
+import com.netflix.archaius.api.IntProperty;
+import com.netflix.archaius.api.LongProperty;
 import com.netflix.archaius.api.Property;
 import com.netflix.archaius.api.PropertyContainer;
 import com.netflix.archaius.api.PropertyFactory;
 import com.netflix.archaius.api.PropertyListener;
+import com.netflix.archaius.api.PropertySnapshot;
+import com.netflix.archaius.instrumentation.PropertyMetrics;
+import com.netflix.archaius.interpolate.LookupRecorder;
+import com.netflix.archaius.property.PropertyCache;
+import com.netflix.archaius.property.VersionedCell;
+import com.netflix.archaius.property.VersionedCell.Versioned;
+import com.netflix.archaius.util.CoalescingDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicStampedReference;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
+public class DefaultPropertyFactory implements PropertyFactory, ConfigChangeListener {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultPropertyFactory.class);
     
     /**
@@ -35,6 +60,69 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
         return new DefaultPropertyFactory(config);
     }
 
+    /**
+     * Create a Property factory that is attached to a specific config and eagerly re-resolves
+     * all live properties on the provided executor whenever the config changes.
+     * @param config
+     * @param refreshExecutor
+     * @return
+     */
+    public static DefaultPropertyFactory from(final Config config, final Executor refreshExecutor) {
+        return new DefaultPropertyFactory(config, refreshExecutor);
+    }
+
+    public static Builder builder(final Config config) {
+        return new Builder(config);
+    }
+
+    public static class Builder {
+        private final Config config;
+        private Executor refreshExecutor;
+        private int maxRetainedProperties = -1;
+        private PropertyMetrics metrics;
+        
+        Builder(Config config) {
+            this.config = config;
+        }
+        
+        /**
+         * Eagerly re-resolve all live properties on the provided executor whenever the config changes
+         */
+        public Builder withRefreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+        
+        /**
+         * Evict properties from the cache once they are no longer referenced by the application, 
+         * other than the specified number of most recently used properties.  Properties with active
+         * subscriptions are never evicted.  By default all properties are cached for the lifetime of
+         * the factory.
+         * 
+         * @param maxRetainedProperties Number of unreferenced properties to keep cached
+         */
+        public Builder withWeakPropertyCache(int maxRetainedProperties) {
+            this.maxRetainedProperties = maxRetainedProperties;
+            return this;
+        }
+        
+        /**
+         * Report reads and resolution of all properties to the provided metrics
+         */
+        public Builder withMetrics(PropertyMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+        
+        public DefaultPropertyFactory build() {
+            if (maxRetainedProperties < 0) {
+                return new DefaultPropertyFactory(config, refreshExecutor, metrics, PropertyCache.strong(), false);
+            }
+            return new DefaultPropertyFactory(config, refreshExecutor, metrics, 
+                    PropertyCache.weak(maxRetainedProperties), true);
+        }
+    }
+
     /**
      * Config from which properties are retrieved.  Config may be a composite.
      */
@@ -43,7 +131,13 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
     /**
      * Cache of properties so PropertyContainer may be re-used
      */
-    private final ConcurrentMap<KeyAndType<?>, Property<?>> properties = new ConcurrentHashMap<>();
+    private final PropertyCache<KeyAndType<?>, Property<?>> properties;
+    
+    /**
+     * Canonical instances of properties derived via orElse, orElseGet and map.  Always weak since
+     * arguments such as capturing lambdas may be unique per call.
+     */
+    private final PropertyCache<DerivedKey, Property<?>> derivedProperties;
     
     /**
      * Monotonically incrementing version number whenever a change in the Config
@@ -53,15 +147,113 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
     private final AtomicInteger masterVersion = new AtomicInteger();
     
     /**
-     * Array of all active callbacks.  ListenerWrapper#update will be called for any
-     * change in config.  
+     * Version and subscribers per key for which a Property was created.  The version is incremented whenever
+     * a change to the key (or to a key it may be interpolated from) is identified.  A property's
+     * effective version is the sum of masterVersion and the versions of all keys it reads from.
+     * Weak when properties are weakly cached so that state of keys without properties is evicted, along with the
+     * dependencies tracked for them.
+     */
+    private final PropertyCache<String, KeyState> keyStates;
+    
+    /**
+     * Keys looked up while interpolating the value of a key the last time a property for it was resolved,
+     * including keys referenced by nested variables.
+     */
+    private final ConcurrentMap<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+    
+    /**
+     * Reverse index of dependencies so that a change to a key also invalidates every key whose value
+     * was interpolated from it.
+     */
+    private final ConcurrentMap<String, Set<String>> dependents = new ConcurrentHashMap<>();
+    
+    /**
+     * Keys whose value was interpolated from another config, such as the parent of a prefixed view.  Since 
+     * changes don't identify keys of that config these are invalidated on any change.
+     */
+    private final Set<String> untrackedKeys = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Number of changes to known keys, used to detect a change racing with recording a key's dependencies
+     */
+    private final AtomicInteger keyChangeCount = new AtomicInteger();
+    
+    /**
+     * Array of all active callbacks.  All callbacks are invoked for changes where the affected keys
+     * are not known.  Callbacks are also indexed by key in keyStates so that a change to a known set
+     * of keys only invokes the callbacks of properties reading from those keys.
      */
     private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
 
+    /**
+     * Executor on which properties are re-resolved after a change or null to re-resolve inline on
+     * the first call to Property.get() after the change.
+     */
+    private final Executor refreshExecutor;
+    
+    /**
+     * Metrics to which property reads and resolution are reported or null if disabled
+     */
+    private final PropertyMetrics metrics;
+    
+    /**
+     * All properties, including those created via orElse and map, that were resolved at least once
+     * and should be refreshed by refreshExecutor.  Only used when refreshExecutor is set.
+     */
+    private final Set<PropertyImpl<?>> liveProperties = Collections.newSetFromMap(new WeakHashMap<>());
+    
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    
+    /**
+     * Callbacks to invoke once the pending refresh completes.  Only used when refreshExecutor is set.
+     */
+    private final Set<Runnable> pendingListeners = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Dispatcher on which subscribers receive new values or null to call subscribers inline
+     */
+    private volatile CoalescingDispatcher dispatcher;
+    
+    /**
+     * Snapshot pinned to the current thread, if any.  Only read and written by the owning thread so that
+     * pinning doesn't add shared writes to Property.get().
+     */
+    private final ThreadLocal<PropertySnapshotImpl> pinnedSnapshot = new ThreadLocal<>();
+
     public DefaultPropertyFactory(Config config) {
+        this(config, null);
+    }
+
+    /**
+     * @param config
+     * @param refreshExecutor Executor on which all live properties are re-resolved whenever the config changes.  
+     *      Property.get() will return the previously resolved value until the refresh completes, after which
+     *      all subscribers are notified from the executor.
+     */
+    public DefaultPropertyFactory(Config config, Executor refreshExecutor) {
+        this(config, refreshExecutor, null, PropertyCache.strong(), false);
+    }
+
+    /**
+     * @param weakKeyStates Evict the state of keys without properties, along with the dependencies tracked for them
+     */
+    private DefaultPropertyFactory(Config config, Executor refreshExecutor, PropertyMetrics metrics,
+            PropertyCache<KeyAndType<?>, Property<?>> properties, boolean weakKeyStates) {
         this.config = config;
+        this.refreshExecutor = refreshExecutor;
+        this.metrics = metrics;
+        this.properties = properties;
+        this.derivedProperties = PropertyCache.weak(0);
+        this.keyStates = weakKeyStates ? PropertyCache.weak(0, this::untrack) : PropertyCache.strong();
         this.config.addListener(this);
     }
+    
+    /**
+     * @return Cache of properties created by get(), exposing hit, miss and eviction counts
+     */
+    public PropertyCache<?, ?> getPropertyCache() {
+        return properties;
+    }
 
     @Override
     public PropertyContainer getProperty(String propName) {
@@ -124,8 +316,8 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
             @Override
             public <T> Property<T> asType(Function<String, T> mapper, String defaultValue) {
                 T typedDefaultValue = mapper.apply(defaultValue);
-                return getFromSupplier(propName, null, () -> {
-                    String value = config.getString(propName, null);
+                return getFromResolver(propName, null, source -> {
+                    String value = source.getString(propName, null);
                     if (value != null) {
                         try {
                             return mapper.apply(value);
@@ -151,8 +343,12 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
     }
 
     @Override
-    public void onConfigUpdated(Config config) {
-        invalidate();
+    public void onConfigUpdated(Config config, ConfigChange change) {
+        if (change.isKnown()) {
+            invalidate(change.getKeys());
+        } else {
+            invalidate();
+        }
     }
 
     @Override
@@ -160,15 +356,173 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
         // TODO
     }
 
+    /**
+     * Deliver new values to property subscribers on the dispatcher's executor.  Values are still
+     * compared on the thread processing the change but a slow subscriber will no longer delay
+     * delivery to other subscribers.
+     * 
+     * @param dispatcher Dispatcher to use or null to call subscribers inline
+     */
+    public void setDispatcher(CoalescingDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     public void invalidate() {
         // Incrementing the version will cause all PropertyContainer instances to invalidate their
         // cache on the next call to get
         masterVersion.incrementAndGet();
         
-        // We expect a small set of callbacks and invoke all of them whenever there is any change
-        // in the configuration regardless of change. The blanket update is done since we don't track
-        // a dependency graph of replacements.
-        listeners.forEach(Runnable::run);
+        // Without knowing which keys changed we have to invoke all callbacks
+        notifyListeners(listeners);
+    }
+    
+    /**
+     * Invalidate only the properties that read from any of the provided keys, or from a key whose value 
+     * was interpolated from any of them.
+     * @param keys
+     */
+    public void invalidate(Collection<String> keys) {
+        keyChangeCount.incrementAndGet();
+        
+        Set<String> affected = new LinkedHashSet<>(keys);
+        for (String key : keys) {
+            affected.addAll(dependents.getOrDefault(key, Collections.emptySet()));
+        }
+        affected.addAll(untrackedKeys);
+        
+        Set<Runnable> toNotify = new LinkedHashSet<>();
+        for (String key : affected) {
+            invalidateKey(key, toNotify);
+        }
+        
+        notifyListeners(toNotify);
+    }
+    
+    private void invalidateKey(String key, Set<Runnable> toNotify) {
+        KeyState state = keyStates.getIfPresent(key);
+        if (state != null) {
+            state.version.incrementAndGet();
+            toNotify.addAll(state.listeners);
+        }
+    }
+    
+    private void notifyListeners(Collection<Runnable> toNotify) {
+        if (refreshExecutor == null) {
+            toNotify.forEach(Runnable::run);
+            return;
+        }
+        
+        pendingListeners.addAll(toNotify);
+        if (refreshPending.compareAndSet(false, true)) {
+            // Changes arriving before the refresh starts are folded into a single refresh
+            try {
+                refreshExecutor.execute(this::refresh);
+            } catch (RejectedExecutionException e) {
+                refreshPending.set(false);
+                LOG.warn("Unable to schedule refresh of properties.  Properties will be refreshed on the next change", e);
+            }
+        }
+    }
+    
+    /**
+     * Re-resolve all stale properties and then notify subscribers once the new values have been published
+     */
+    private void refresh() {
+        refreshPending.set(false);
+        
+        List<PropertyImpl<?>> snapshot;
+        synchronized (liveProperties) {
+            snapshot = new ArrayList<>(liveProperties);
+        }
+        for (PropertyImpl<?> property : snapshot) {
+            property.getLatest(null);
+        }
+        
+        Iterator<Runnable> iter = pendingListeners.iterator();
+        while (iter.hasNext()) {
+            Runnable listener = iter.next();
+            iter.remove();
+            listener.run();
+        }
+    }
+    
+    private KeyState getKeyState(String key) {
+        return keyStates.computeIfAbsent(key, (ignore) -> new KeyState());
+    }
+    
+    /**
+     * Resolve the value of a key from the factory's config while recording the keys it was interpolated
+     * from, so that the key will be invalidated on changes to any of those keys
+     */
+    private <T> T resolveTracked(String key, Function<Config, T> resolver) {
+        int changes = keyChangeCount.get();
+        LookupRecorder recorder = LookupRecorder.start(config);
+        try {
+            return resolver.apply(config);
+        } finally {
+            recorder.stop();
+            trackDependencies(key, recorder);
+            if (!recorder.getKeys().isEmpty() && keyChangeCount.get() != changes) {
+                // A dependency may have changed before it was indexed, so don't trust the value
+                getKeyState(key).version.incrementAndGet();
+            }
+        }
+    }
+    
+    private void trackDependencies(String key, LookupRecorder recorder) {
+        Set<String> referenced = new HashSet<>(recorder.getKeys());
+        referenced.remove(key);
+        dependencies.compute(key, (k, previous) -> {
+            if (recorder.isComplete()) {
+                untrackedKeys.remove(key);
+            } else {
+                untrackedKeys.add(key);
+            }
+            if (previous != null) {
+                for (String dependency : previous) {
+                    if (!referenced.contains(dependency)) {
+                        dependents.computeIfPresent(dependency, (d, keys) -> {
+                            keys.remove(key);
+                            return keys.isEmpty() ? null : keys;
+                        });
+                    }
+                }
+            }
+            for (String dependency : referenced) {
+                if (previous == null || !previous.contains(dependency)) {
+                    dependents.compute(dependency, (d, keys) -> {
+                        if (keys == null) {
+                            keys = ConcurrentHashMap.newKeySet();
+                        }
+                        keys.add(key);
+                        return keys;
+                    });
+                }
+            }
+            return referenced.isEmpty() ? null : referenced;
+        });
+    }
+    
+    /**
+     * Stop tracking the dependencies of a key once its state was evicted, unless a property for the key was
+     * created again in the meantime.  Serialized with trackDependencies by computing the key's dependencies.
+     */
+    private void untrack(String key) {
+        dependencies.compute(key, (k, previous) -> {
+            if (keyStates.getIfPresent(key) != null) {
+                return previous;
+            }
+            untrackedKeys.remove(key);
+            if (previous != null) {
+                for (String dependency : previous) {
+                    dependents.computeIfPresent(dependency, (d, keys) -> {
+                        keys.remove(key);
+                        return keys.isEmpty() ? null : keys;
+                    });
+                }
+            }
+            return null;
+        });
     }
     
     protected Config getConfig() {
@@ -177,54 +531,203 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
 
     @Override
     public <T> Property<T> get(String key, Class<T> type) {
-        return getFromSupplier(key, type, () -> config.get(type, key, null));
+        return getFromResolver(key, type, source -> source.get(type, key, null));
     }
 
     @Override
     public <T> Property<T> get(String key, Type type) {
-        return getFromSupplier(key, type, () -> config.get(type, key, null));
+        return getFromResolver(key, type, source -> source.get(type, key, null));
     }
 
-    private <T> Property<T> getFromSupplier(String key, Type type, Supplier<T> supplier) {
-        return getFromSupplier(new KeyAndType<T>(key, type), supplier);
+    @Override
+    public IntProperty getInt(String key, int defaultValue) {
+        return getPrimitive(get(key, Integer.class), defaultValue, IntPropertyImpl::new);
     }
 
+    @Override
+    public LongProperty getLong(String key, long defaultValue) {
+        return getPrimitive(get(key, Long.class), defaultValue, LongPropertyImpl::new);
+    }
+
+    @Override
+    public DoubleProperty getDouble(String key, double defaultValue) {
+        return getPrimitive(get(key, Double.class), defaultValue, DoublePropertyImpl::new);
+    }
+
+    @Override
+    public BooleanProperty getBoolean(String key, boolean defaultValue) {
+        return getPrimitive(get(key, Boolean.class), defaultValue, BooleanPropertyImpl::new);
+    }
+
+    /**
+     * Return the canonical primitive specialization of the property with the default value, cached alongside
+     * the properties derived from it so that repeated calls don't allocate a new wrapper
+     */
     @SuppressWarnings("unchecked")
-    private <T> Property<T> getFromSupplier(KeyAndType<T> keyAndType, Supplier<T> supplier) {
-        return (Property<T>) properties.computeIfAbsent(keyAndType, (ignore) -> new PropertyImpl<T>(keyAndType, supplier));
+    private <T, P extends PrimitivePropertyImpl<T>> P getPrimitive(
+            Property<T> base, T defaultValue, BiFunction<Property<T>, T, P> factory) {
+        return (P) derivedProperties.computeIfAbsent(
+                new DerivedKey(base, "primitive", defaultValue), (ignore) -> factory.apply(base, defaultValue));
+    }
+    
+    @Override
+    public PropertySnapshot snapshot() {
+        return new PropertySnapshotImpl(config.snapshot());
+    }
+    
+    private <T> Property<T> getFromResolver(String key, Type type, Function<Config, T> resolver) {
+        return getFromResolver(new KeyAndType<T>(key, type), 
+                source -> source == config ? resolveTracked(key, resolver) : resolver.apply(source));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Property<T> getFromResolver(KeyAndType<T> keyAndType, Function<Config, T> resolver) {
+        return (Property<T>) properties.computeIfAbsent(keyAndType, (ignore) -> new PropertyImpl<T>(null, keyAndType, resolver, 
+                new KeyState[] { getKeyState(keyAndType.key) }));
     }
     
     private class PropertyImpl<T> implements Property<T> {
+        /**
+         * Property from which this property was derived.  Keeps the chain of canonical derived properties
+         * reachable for as long as this property is.
+         */
+        private final PropertyImpl<?> base;
+        /**
+         * Operations by which this property was derived from the property created by the factory, such as
+         * "orElse.map", or null if it was not derived
+         */
+        private final String derivation;
         private final KeyAndType<T> keyAndType;
-        private final Supplier<T> supplier;
-        private final AtomicStampedReference<T> cache = new AtomicStampedReference<>(null, -1);
+        private final Function<Config, T> resolver;
+        private final KeyState[] keyStates;
+        private final VersionedCell<T> cache = new VersionedCell<>();
+        private final PropertyMetrics.Recorder recorder;
         private final ConcurrentMap<PropertyListener<?>, Subscription> oldSubscriptions = new ConcurrentHashMap<>();
         
-        public PropertyImpl(KeyAndType<T> keyAndType, Supplier<T> supplier) {
+        /**
+         * @param base Property from which this property was derived or null
+         * @param keyAndType
+         * @param resolver Function resolving the value from the factory's config or a snapshot of it
+         * @param keyStates State of all the keys from which the resolver reads
+         */
+        public PropertyImpl(PropertyImpl<?> base, KeyAndType<T> keyAndType, Function<Config, T> resolver, KeyState[] keyStates) {
+            this(base, null, keyAndType, resolver, keyStates);
+        }
+        
+        /**
+         * @param operation Operation by which the property was derived from base or null if it was not derived
+         */
+        PropertyImpl(PropertyImpl<?> base, String operation, KeyAndType<T> keyAndType, Function<Config, T> resolver, KeyState[] keyStates) {
+            this.base = base;
+            this.derivation = base == null ? null : base.derivation == null ? operation : base.derivation + "." + operation;
             this.keyAndType = keyAndType;
-            this.supplier = supplier;
+            this.resolver = resolver;
+            this.keyStates = keyStates;
+            this.recorder = metrics == null ? null : createRecorder();
+        }
+        
+        /**
+         * Derived properties are recorded separately from the property created by the factory that they were
+         * derived from, so that every read is attributed to exactly one property
+         */
+        private PropertyMetrics.Recorder createRecorder() {
+            if (base == null) {
+                return metrics.forProperty(keyAndType.key, keyAndType.type);
+            }
+            PropertyImpl<?> root = base;
+            while (root.base != null) {
+                root = root.base;
+            }
+            return metrics.forDerivedProperty(root.keyAndType.key, root.keyAndType.type, derivation);
+        }
+        
+        /**
+         * Since all versions only ever increase their sum changes whenever any one of them changes.
+         */
+        private int latestVersion() {
+            int version = masterVersion.get();
+            for (KeyState keyState : keyStates) {
+                version += keyState.version.get();
+            }
+            return version;
         }
         
         @Override
         public T get() {
-            int cacheVersion = cache.getStamp();
-            int latestVersion  = masterVersion.get();
+            return get(recorder);
+        }
+        
+        /**
+         * @param recorder Recorder of the read or null if the property is read by the factory itself, such as to
+         *      notify subscribers, so that only reads by the application are counted
+         */
+        private T get(PropertyMetrics.Recorder recorder) {
+            PropertySnapshotImpl snapshot = pinnedSnapshot.get();
+            if (snapshot != null) {
+                return snapshot.resolve(this);
+            }
+            if (refreshExecutor != null) {
+                // The value is kept up to date by refresh() so only resolve inline on first access
+                if (cache.isSet()) {
+                    if (recorder != null) {
+                        recorder.recordHit();
+                    }
+                    return cache.get().getValue();
+                }
+                synchronized (liveProperties) {
+                    liveProperties.add(this);
+                }
+            }
+            return getLatest(recorder);
+        }
+        
+        /**
+         * Fetch the latest version of the property.  If not up to date then resolve to the latest
+         * value, inline.
+         * 
+         * @param recorder Recorder of the read or null if the read is part of reading another property or made by
+         *      the factory itself, such as to refresh the property
+         */
+        private T getLatest(PropertyMetrics.Recorder recorder) {
+            Versioned<T> current = cache.get();
+            int latestVersion  = latestVersion();
             
-            if (cacheVersion != latestVersion) {
-                T currentValue = cache.getReference();
-                T newValue = null;
-                try {
-                    newValue = supplier.get();
-                } catch (Exception e) {
-                    LOG.warn("Unable to get current version of property '{}'", keyAndType.key, e);
+            if (current.getVersion() == latestVersion) {
+                if (recorder != null) {
+                    recorder.recordHit();
                 }
-                
-                if (cache.compareAndSet(currentValue, newValue, cacheVersion, latestVersion)) {
-                    // Possible race condition here but not important enough to warrant locking
-                    return newValue;
+                return current.getValue();
+            }
+            
+            if (recorder != null) {
+                recorder.recordMiss();
+            }
+            // Returns the value of a newer version if one was published while resolving
+            return cache.publish(tryResolve(config), latestVersion);
+        }
+        
+        /**
+         * Resolve the value from the provided source, using the cache if the source is the factory's config.  Used
+         * while reading another property, which the read is attributed to.
+         */
+        T resolve(Config source) {
+            return source == config ? getLatest(null) : resolver.apply(source);
+        }
+        
+        T tryResolve(Config source) {
+            long start = recorder != null ? System.nanoTime() : 0;
+            boolean failed = false;
+            try {
+                return resolver.apply(source);
+            } catch (Exception e) {
+                failed = true;
+                LOG.warn("Unable to get current version of property '{}'", keyAndType.key, e);
+                return null;
+            } finally {
+                if (recorder != null) {
+                    recorder.recordResolve(System.nanoTime() - start, failed);
                 }
             }
-            return cache.getReference();
         }
 
         @Override
@@ -235,10 +738,10 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
         @Override
         public Subscription subscribe(Consumer<T> consumer) {
             Runnable action = new Runnable() {
-                private T current = get();
+                private T current = get(null);
                 @Override
                 public synchronized void run() {
-                    T newValue = get();
+                    T newValue = get(null);
                     if (current == newValue && current == null) {
                         return;
                     } else if (current == null) {
@@ -250,12 +753,25 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
                     } else {
                         current = newValue;
                     }
-                    consumer.accept(current);
+                    CoalescingDispatcher dispatcher = DefaultPropertyFactory.this.dispatcher;
+                    if (dispatcher != null) {
+                        dispatcher.dispatch(consumer, current);
+                    } else {
+                        consumer.accept(current);
+                    }
                 }
             };
             
             listeners.add(action);
-            return () -> listeners.remove(action);
+            for (KeyState keyState : keyStates) {
+                keyState.listeners.add(action);
+            }
+            return () -> {
+                listeners.remove(action);
+                for (KeyState keyState : keyStates) {
+                    keyState.listeners.remove(action);
+                }
+            };
         }
 
         @Deprecated
@@ -280,7 +796,8 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
         
         @Override
         public Property<T> orElse(T defaultValue) {
-            return new PropertyImpl<T>(keyAndType, () -> Optional.ofNullable(supplier.get()).orElse(defaultValue));
+            return derive("orElse", defaultValue, () -> 
+                new PropertyImpl<T>(this, "orElse", keyAndType, source -> Optional.ofNullable(resolver.apply(source)).orElse(defaultValue), keyStates));
         }
         
         @Override
@@ -288,21 +805,35 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
             if (!keyAndType.hasType()) {
                 throw new IllegalStateException("Type information lost due to map() operation.  All calls to orElse[Get] must be made prior to calling map");
             }
-            KeyAndType<T> keyAndType = this.keyAndType.withKey(key);
-            Property<T> next = DefaultPropertyFactory.this.get(key, keyAndType.type);
-            return new PropertyImpl<T>(keyAndType, () -> Optional.ofNullable(supplier.get()).orElseGet(next));
+            return derive("orElseGet", key, () -> {
+                KeyAndType<T> keyAndType = this.keyAndType.withKey(key);
+                PropertyImpl<T> next = (PropertyImpl<T>) DefaultPropertyFactory.this.<T>get(key, keyAndType.type);
+                KeyState[] states = Arrays.copyOf(keyStates, keyStates.length + 1);
+                states[keyStates.length] = getKeyState(key);
+                return new PropertyImpl<T>(this, "orElseGet", keyAndType, source -> Optional.ofNullable(resolver.apply(source)).orElseGet(() -> next.resolve(source)), states);
+            });
         }
         
         @Override
         public <S> Property<S> map(Function<T, S> mapper) {
-            return new PropertyImpl<>(keyAndType.discardType(), () -> {
-                T value = supplier.get();
+            return derive("map", mapper, () -> new PropertyImpl<>(this, "map", keyAndType.discardType(), source -> {
+                T value = resolver.apply(source);
                 if (value != null) {
                     return mapper.apply(value);
                 } else {
                     return null;
                 }
-            });
+            }, keyStates));
+        }
+        
+        /**
+         * Return the canonical property derived from this property by the operation and argument so
+         * that identical chains share one instance and one cached value
+         */
+        @SuppressWarnings("unchecked")
+        private <S> Property<S> derive(String operation, Object argument, Supplier<PropertyImpl<S>> factory) {
+            return (Property<S>) derivedProperties.computeIfAbsent(
+                    new DerivedKey(this, operation, argument), (ignore) -> factory.get());
         }
 
         @Override
@@ -311,6 +842,212 @@ public class DefaultPropertyFactory implements PropertyFactory, ConfigListener {
         }
     }
     
+    /**
+     * Base for the primitive specializations of Property.  The decoded value is cached by the shared
+     * property for the key so reading it only unboxes an already cached object, and the default value
+     * is applied without going through an orElse() chain. 
+     */
+    private abstract class PrimitivePropertyImpl<T> extends DelegatingProperty<T> {
+        private final T boxedDefaultValue;
+        
+        PrimitivePropertyImpl(Property<T> base, T defaultValue) {
+            super(base);
+            this.boxedDefaultValue = defaultValue;
+        }
+        
+        @Override
+        public T get() {
+            T value = delegate.get();
+            return value == null ? boxedDefaultValue : value;
+        }
+        
+        @Override
+        public Subscription subscribe(Consumer<T> consumer) {
+            return delegate.subscribe(value -> consumer.accept(value == null ? boxedDefaultValue : value));
+        }
+        
+        /**
+         * The value is never null so the default value never applies, but the property is derived the same way
+         * as from the boxed property with this property's default value
+         */
+        @Override
+        public Property<T> orElse(T defaultValue) {
+            return delegate.orElse(boxedDefaultValue).orElse(defaultValue);
+        }
+        
+        @Override
+        public Property<T> orElseGet(String key) {
+            return delegate.orElse(boxedDefaultValue).orElseGet(key);
+        }
+        
+        @Override
+        public <S> Property<S> map(Function<T, S> mapper) {
+            return delegate.orElse(boxedDefaultValue).map(mapper);
+        }
+        
+        @Override
+        public String toString() {
+            return "Property [Key=" + getKey() + "; value="+get() + "]";
+        }
+    }
+    
+    private final class IntPropertyImpl extends PrimitivePropertyImpl<Integer> implements IntProperty {
+        private final int defaultValue;
+        
+        IntPropertyImpl(Property<Integer> base, Integer defaultValue) {
+            super(base, defaultValue);
+            this.defaultValue = defaultValue;
+        }
+        
+        @Override
+        public int getAsInt() {
+            Integer value = delegate.get();
+            return value == null ? defaultValue : value;
+        }
+    }
+    
+    private final class LongPropertyImpl extends PrimitivePropertyImpl<Long> implements LongProperty {
+        private final long defaultValue;
+        
+        LongPropertyImpl(Property<Long> base, Long defaultValue) {
+            super(base, defaultValue);
+            this.defaultValue = defaultValue;
+        }
+        
+        @Override
+        public long getAsLong() {
+            Long value = delegate.get();
+            return value == null ? defaultValue : value;
+        }
+    }
+    
+    private final class DoublePropertyImpl extends PrimitivePropertyImpl<Double> implements DoubleProperty {
+        private final double defaultValue;
+        
+        DoublePropertyImpl(Property<Double> base, Double defaultValue) {
+            super(base, defaultValue);
+            this.defaultValue = defaultValue;
+        }
+        
+        @Override
+        public double getAsDouble() {
+            Double value = delegate.get();
+            return value == null ? defaultValue : value;
+        }
+    }
+    
+    private final class BooleanPropertyImpl extends PrimitivePropertyImpl<Boolean> implements BooleanProperty {
+        private final boolean defaultValue;
+        
+        BooleanPropertyImpl(Property<Boolean> base, Boolean defaultValue) {
+            super(base, defaultValue);
+            this.defaultValue = defaultValue;
+        }
+        
+        @Override
+        public boolean getAsBoolean() {
+            Boolean value = delegate.get();
+            return value == null ? defaultValue : value;
+        }
+    }
+    
+    private final class PropertySnapshotImpl implements PropertySnapshot {
+        private final Config snapshot;
+        
+        /**
+         * Values of properties resolved from this snapshot.  Optional is used since null values may not be stored.
+         */
+        private final ConcurrentMap<PropertyImpl<?>, Optional<?>> values = new ConcurrentHashMap<>();
+        
+        PropertySnapshotImpl(Config snapshot) {
+            this.snapshot = snapshot;
+        }
+        
+        @Override
+        public Config getConfig() {
+            return snapshot;
+        }
+        
+        @Override
+        public <T> T get(Property<T> property) {
+            Scope scope = pin();
+            try {
+                return property.get();
+            } finally {
+                scope.close();
+            }
+        }
+        
+        @Override
+        public Scope pin() {
+            PropertySnapshotImpl previous = pinnedSnapshot.get();
+            pinnedSnapshot.set(this);
+            return () -> {
+                if (previous == null) {
+                    pinnedSnapshot.remove();
+                } else {
+                    pinnedSnapshot.set(previous);
+                }
+            };
+        }
+        
+        @SuppressWarnings("unchecked")
+        <T> T resolve(PropertyImpl<T> property) {
+            // Not using computeIfAbsent since a map() function may read other properties
+            Optional<?> value = values.get(property);
+            if (value == null) {
+                value = Optional.ofNullable(property.tryResolve(snapshot));
+                Optional<?> existing = values.putIfAbsent(property, value);
+                if (existing != null) {
+                    value = existing;
+                }
+            }
+            return (T) value.orElse(null);
+        }
+    }
+    
+    /**
+     * Identifies a property derived from a base property via orElse, orElseGet or map.  The base
+     * is compared by identity while the argument, such as the default value or mapping function,
+     * is compared by equality.
+     */
+    private static final class DerivedKey {
+        private final Object base;
+        private final String operation;
+        private final Object argument;
+        
+        DerivedKey(Object base, String operation, Object argument) {
+            this.base = base;
+            this.operation = operation;
+            this.argument = argument;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(base), operation, argument);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DerivedKey)) {
+                return false;
+            }
+            DerivedKey other = (DerivedKey) obj;
+            return base == other.base && operation.equals(other.operation) && Objects.equals(argument, other.argument);
+        }
+    }
+    
+    /**
+     * Version and subscriber callbacks of a single key
+     */
+    private static final class KeyState {
+        private final AtomicInteger version = new AtomicInteger();
+        private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    }
+    
     private static final class KeyAndType<T> {
         private final String key;
         private final Type type;
@@ -16,22 +16,30 @@
 package com.netflix.archaius.config;
 
 import com.netflix.archaius.DefaultDecoder;
+import com.netflix.archaius.DefaultPropertyFactory;
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
 import com.netflix.archaius.api.ConfigListener;
 import com.netflix.archaius.api.Decoder;
 import com.netflix.archaius.api.StrInterpolator;
 import com.netflix.archaius.api.StrInterpolator.Lookup;
 import com.netflix.archaius.exceptions.ParseException;
-import com.netflix.archaius.interpolate.CommonsStrInterpolator;
 import com.netflix.archaius.interpolate.ConfigStrLookup;
+import com.netflix.archaius.interpolate.DefaultStrInterpolator;
+import com.netflix.archaius.interpolate.LookupRecorder;
+import com.netflix.archaius.util.CoalescingDispatcher;
 
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -44,6 +52,9 @@ public abstract class AbstractConfig implements Config {
     private Decoder decoder;
     private StrInterpolator interpolator;
     private String listDelimiter = ",";
+    private volatile CoalescingDispatcher dispatcher;
+    private volatile boolean decodeCacheEnabled;
+    private volatile PrefixedViewRegistry prefixedViews;
     private final String name;
     
     private static final AtomicInteger idCounter = new AtomicInteger();
@@ -53,7 +64,7 @@ public abstract class AbstractConfig implements Config {
     
     public AbstractConfig(String name) {
         this.decoder = DefaultDecoder.INSTANCE;
-        this.interpolator = CommonsStrInterpolator.INSTANCE;
+        this.interpolator = DefaultStrInterpolator.INSTANCE;
         this.lookup = ConfigStrLookup.from(this);
         this.name = name == null ? generateUniqueName("unnamed-") : name;
     }
@@ -86,6 +97,7 @@ public abstract class AbstractConfig implements Config {
     @Override
     public void setDecoder(Decoder decoder) {
         this.decoder = decoder;
+        clearDecodedValues();
     }
 
     @Override
@@ -96,6 +108,56 @@ public abstract class AbstractConfig implements Config {
     @Override
     public void setStrInterpolator(StrInterpolator interpolator) {
         this.interpolator = interpolator;
+        clearDecodedValues();
+    }
+
+    public boolean isDecodeCacheEnabled() {
+        return decodeCacheEnabled;
+    }
+
+    /**
+     * Cache values decoded by the typed getters, such as getInteger or get(Type, String), so that 
+     * repeated reads of a key don't parse its value again.  Only configs backed by an immutable state,
+     * such as composite configs, views and snapshots, support the cache and their cached values are 
+     * discarded whenever the state is replaced.  Values interpolated from another config are never 
+     * cached.  Since the same instance is returned on every read decoders must not return values that 
+     * callers may modify.
+     * 
+     * @param enabled True to cache decoded values
+     */
+    public void setDecodeCacheEnabled(boolean enabled) {
+        this.decodeCacheEnabled = enabled;
+        clearDecodedValues();
+    }
+
+    /**
+     * @return Cache of decoded values for the config's current state or null if not supported
+     */
+    DecodedValueCache getDecodedValueCache() {
+        return null;
+    }
+
+    private void clearDecodedValues() {
+        DecodedValueCache cache = getDecodedValueCache();
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    public CoalescingDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Deliver notifications to listeners on the dispatcher's executor instead of the thread making
+     * the change.  Listeners through which dependent configs and property factories track this config
+     * are always notified inline so that their state is consistent with this config's, and only
+     * other subscribers are deferred.
+     * 
+     * @param dispatcher Dispatcher to use or null to notify all listeners inline
+     */
+    public void setDispatcher(CoalescingDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
     @Override
@@ -109,34 +171,78 @@ public abstract class AbstractConfig implements Config {
     }
 
     protected void notifyConfigUpdated(Config child) {
+        notifyConfigUpdated(child, ConfigChange.unknown());
+    }
+
+    /**
+     * Notify all listeners of an update for which the affected keys are known.  Listeners that
+     * implement {@link ConfigChangeListener} will receive the change while all other listeners
+     * receive a plain {@link ConfigListener#onConfigUpdated(Config)}.
+     */
+    protected void notifyConfigUpdated(Config child, ConfigChange change) {
         for (ConfigListener listener : listeners) {
-            listener.onConfigUpdated(child);
+            CoalescingDispatcher dispatcher = getDispatcher(listener);
+            if (dispatcher != null) {
+                dispatcher.dispatchUpdated(listener, child, change);
+            } else if (listener instanceof ConfigChangeListener) {
+                ((ConfigChangeListener) listener).onConfigUpdated(child, change);
+            } else {
+                listener.onConfigUpdated(child);
+            }
         }
     }
 
     protected void notifyError(Throwable t, Config child) {
         for (ConfigListener listener : listeners) {
-            listener.onError(t, child);
+            CoalescingDispatcher dispatcher = getDispatcher(listener);
+            if (dispatcher != null) {
+                dispatcher.dispatch(listener, l -> l.onError(t, child));
+            } else {
+                listener.onError(t, child);
+            }
         }
     }
 
     protected void notifyConfigAdded(Config child) {
         for (ConfigListener listener : listeners) {
-            listener.onConfigAdded(child);
+            CoalescingDispatcher dispatcher = getDispatcher(listener);
+            if (dispatcher != null) {
+                dispatcher.dispatch(listener, l -> l.onConfigAdded(child));
+            } else {
+                listener.onConfigAdded(child);
+            }
         }
     }
 
     protected void notifyConfigRemoved(Config child) {
         for (ConfigListener listener : listeners) {
-            listener.onConfigRemoved(child);
+            CoalescingDispatcher dispatcher = getDispatcher(listener);
+            if (dispatcher != null) {
+                dispatcher.dispatch(listener, l -> l.onConfigRemoved(child));
+            } else {
+                listener.onConfigRemoved(child);
+            }
         }
     }
 
+    private CoalescingDispatcher getDispatcher(ConfigListener listener) {
+        return listener instanceof DependentConfigListener || listener instanceof DefaultPropertyFactory
+                ? null
+                : dispatcher;
+    }
+
+    @Override
+    public Config snapshot() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        forEachPropertyUninstrumented(data::put);
+        return new SnapshotConfig(this, Collections.unmodifiableMap(data));
+    }
+
     @Override
     public String getString(String key, String defaultValue) {
         Object value = getRawProperty(key);
         if (value == null) {
-            return notFound(key, defaultValue != null ? interpolator.create(getLookup()).resolve(defaultValue) : null);
+            return notFound(key, defaultValue != null ? resolve(defaultValue) : null);
         }
 
         if (value instanceof String) {
@@ -224,12 +330,49 @@ public abstract class AbstractConfig implements Config {
         };
     }
 
+    /**
+     * Invoke the consumer for each property whose key starts with the prefix, without recording usage
+     */
+    void forEachPropertyWithPrefixUninstrumented(String prefix, BiConsumer<String, Object> consumer) {
+        forEachPropertyUninstrumented((k, v) -> {
+            if (k.startsWith(prefix)) {
+                consumer.accept(k, v);
+            }
+        });
+    }
+
+    /**
+     * Return the canonical view of this config for the prefix.  Views are shared by all callers asking for the same
+     * prefix, with or without a trailing '.', for as long as the view is referenced.
+     */
     @Override
     public Config getPrefixedView(String prefix) {
         if (prefix == null || prefix.isEmpty() || prefix.equals(".")) {
             return this;
         }
-        return new PrefixedViewConfig(prefix, this);
+        return getPrefixedViewRegistry().get(prefix.endsWith(".") ? prefix : prefix + ".");
+    }
+
+    /**
+     * @return Number of prefixed views of this config that have not been garbage collected
+     */
+    public int getLivePrefixedViewCount() {
+        PrefixedViewRegistry registry = prefixedViews;
+        return registry == null ? 0 : registry.getLiveViewCount();
+    }
+
+    private PrefixedViewRegistry getPrefixedViewRegistry() {
+        PrefixedViewRegistry registry = prefixedViews;
+        if (registry == null) {
+            synchronized (listeners) {
+                registry = prefixedViews;
+                if (registry == null) {
+                    registry = new PrefixedViewRegistry(this);
+                    prefixedViews = registry;
+                }
+            }
+        }
+        return registry;
     }
 
     @Override
@@ -255,11 +398,15 @@ public abstract class AbstractConfig implements Config {
     }
 
     protected <T> T getValueWithDefault(Type type, String key, T defaultValue) {
+        DecodedValueCache cache = decodeCacheEnabled ? getDecodedValueCache() : null;
         Object rawProp = getRawProperty(key);
         if (rawProp == null) {
             return defaultValue;
         }
         if (rawProp instanceof String) {
+            if (cache != null) {
+                return getCachedValue(cache, type, key, rawProp);
+            }
             try {
                 String value = resolve(rawProp.toString());
                 return decoder.decode(type, value);
@@ -277,6 +424,30 @@ public abstract class AbstractConfig implements Config {
                 new NumberFormatException("Property " + rawProp.toString() + " is of wrong format " + type.getTypeName()));
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> T getCachedValue(DecodedValueCache cache, Type type, String key, Object rawProp) {
+        DecodedValueCache.Entry entry = cache.get(key, type, rawProp);
+        if (entry != null) {
+            // Callers recording lookups still see the keys the value was interpolated from
+            LookupRecorder.record(this, entry.getLookups());
+            return (T) entry.getValue();
+        }
+
+        T value;
+        LookupRecorder recorder = LookupRecorder.start(this);
+        try {
+            value = decoder.decode(type, resolve(rawProp.toString()));
+        } catch (NumberFormatException e) {
+            return parseError(key, rawProp.toString(), e);
+        } finally {
+            recorder.stop();
+        }
+        if (value != null && recorder.isComplete()) {
+            cache.put(key, type, rawProp, value, recorder.getKeys());
+        }
+        return value;
+    }
+
     @Override
     public String resolve(String value) {
         return interpolator.create(getLookup()).resolve(value);
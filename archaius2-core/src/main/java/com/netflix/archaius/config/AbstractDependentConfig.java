@@ -1,8 +1,12 @@
 package com.netflix.archaius.config;
 
+import com.netflix.archaius.api.Config;
 import com.netflix.archaius.api.PropertyDetails;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.BiConsumer;
 
 /**
@@ -25,6 +29,11 @@ public abstract class AbstractDependentConfig extends AbstractConfig {
 
     abstract CachedState getState();
 
+    @Override
+    DecodedValueCache getDecodedValueCache() {
+        return getState().getDecodedValues();
+    }
+
     @Override
     public Object getRawProperty(String key) {
         Object value = getState().getData().get(key);
@@ -65,6 +74,24 @@ public abstract class AbstractDependentConfig extends AbstractConfig {
         getState().getData().forEach(consumer);
     }
 
+    @Override
+    public Config snapshot() {
+        return new SnapshotConfig(this, getState().getData());
+    }
+
+    @Override
+    void forEachPropertyWithPrefixUninstrumented(String prefix, BiConsumer<String, Object> consumer) {
+        getState().forEachWithPrefix(prefix, consumer);
+    }
+
+    @Override
+    @Deprecated
+    public Iterator<String> getKeys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        getState().forEachWithPrefix(prefix, (k, v) -> keys.add(k));
+        return Collections.unmodifiableList(keys).iterator();
+    }
+
     @Override
     public boolean containsKey(String key) {
         return getState().getData().containsKey(key);
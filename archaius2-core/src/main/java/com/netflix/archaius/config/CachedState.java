@@ -1,18 +1,32 @@
 package com.netflix.archaius.config;
 
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.util.PersistentMap;
 
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
-/** Represents an immutable, current view of a dependent config over its parent configs. */
+/**
+ * Represents an immutable, current view of a dependent config over its parent configs.  Maps are persistent so that
+ * a state derived from another shares all but the modified entries with it.
+ */
 class CachedState {
-    private final Map<String, Object> data;
-    private final Map<String, Config> instrumentedKeys;
+    private final PersistentMap<String, Object> data;
+    private final PersistentMap<String, Config> instrumentedKeys;
+    private final DecodedValueCache decodedValues = new DecodedValueCache();
+    private volatile String[] sortedKeys;
 
     CachedState(Map<String, Object> data, Map<String, Config> instrumentedKeys) {
-        this.data = Collections.unmodifiableMap(data);
-        this.instrumentedKeys = Collections.unmodifiableMap(instrumentedKeys);
+        this.data = PersistentMap.copyOf(data);
+        this.instrumentedKeys = PersistentMap.copyOf(instrumentedKeys);
     }
 
     Map<String, Object> getData() {
@@ -22,4 +36,103 @@ class CachedState {
     Map<String, Config> getInstrumentedKeys() {
         return instrumentedKeys;
     }
+
+    /** Decoded values of this state's data, discarded along with the state when it is replaced. */
+    DecodedValueCache getDecodedValues() {
+        return decodedValues;
+    }
+
+    /**
+     * Create a copy of this state with values of some keys replaced
+     *
+     * @param updates New values by key, where a null value removes the key
+     * @param sources Config to record usage of each updated key with, or null if not instrumented
+     */
+    CachedState withUpdates(Map<String, Object> updates, Function<String, Config> sources) {
+        PersistentMap.Builder<String, Object> data = this.data.toBuilder();
+        PersistentMap.Builder<String, Config> instrumentedKeys = this.instrumentedKeys.toBuilder();
+        updates.forEach((key, value) -> {
+            Config source = value == null ? null : sources.apply(key);
+            if (value == null) {
+                data.remove(key);
+            } else {
+                data.put(key, value);
+            }
+            if (source == null) {
+                instrumentedKeys.remove(key);
+            } else {
+                instrumentedKeys.put(key, source);
+            }
+        });
+        return new CachedState(data.build(), instrumentedKeys.build());
+    }
+
+    /**
+     * Create a copy of this state, which merges the children's properties, with the given keys resolved again.
+     * The value of a key is that of the first child containing it, so only children up to that one are consulted.
+     *
+     * @param keys Keys that changed in any of the children
+     * @param children Children in order of precedence
+     * @param changed Receives the keys whose merged value changed
+     * @return The new state, or this state if nothing changed
+     */
+    CachedState withKeysMergedFrom(Collection<String> keys, Collection<Config> children, Set<String> changed) {
+        Map<String, Object> updates = new HashMap<>();
+        Map<String, Config> sources = new HashMap<>();
+        for (String key : keys) {
+            Object value = null;
+            Config source = null;
+            for (Config child : children) {
+                value = child.getRawPropertyUninstrumented(key);
+                if (value != null) {
+                    source = child.instrumentationEnabled() ? child : null;
+                    break;
+                }
+            }
+            boolean valueChanged = !Objects.equals(value, data.get(key));
+            if (valueChanged || source != instrumentedKeys.get(key)) {
+                updates.put(key, value);
+                if (source != null) {
+                    sources.put(key, source);
+                }
+            }
+            if (valueChanged) {
+                changed.add(key);
+            }
+        }
+        return updates.isEmpty() ? this : withUpdates(updates, sources::get);
+    }
+
+    /**
+     * @return Keys whose value differs between the previous state and this state, along with their values.  Costs
+     *      in proportion to the number of differences when this state was derived from the previous one.
+     */
+    ConfigChange changesSince(CachedState previous) {
+        Set<String> keys = new HashSet<>();
+        PersistentMap.forEachDifference(previous.data, data, keys::add);
+        return ConfigChange.of(keys, previous.data, data);
+    }
+
+    /**
+     * Invoke the consumer for each property whose key starts with the prefix, in key order.  Keys are sorted
+     * on first use so that a range of keys is found with a binary search instead of testing every key.
+     */
+    void forEachWithPrefix(String prefix, BiConsumer<String, Object> consumer) {
+        String[] keys = getSortedKeys();
+        int index = Arrays.binarySearch(keys, prefix);
+        for (int i = index < 0 ? -index - 1 : index; i < keys.length && keys[i].startsWith(prefix); i++) {
+            consumer.accept(keys[i], data.get(keys[i]));
+        }
+    }
+
+    private String[] getSortedKeys() {
+        String[] keys = sortedKeys;
+        if (keys == null) {
+            // Racing threads sort the same immutable keys so any of the results may be kept
+            keys = data.keySet().toArray(new String[0]);
+            Arrays.sort(keys);
+            sortedKeys = keys;
+        }
+        return keys;
+    }
 }
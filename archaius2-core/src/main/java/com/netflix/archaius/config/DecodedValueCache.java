@@ -0,0 +1,58 @@
+package com.netflix.archaius.config;
+
+import java.lang.reflect.Type;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decoded values by key and type for an immutable set of properties.  Each value is cached along
+ * with the raw value it was decoded from and is only returned for that same raw value, so a lookup
+ * racing with the replacement of the properties never returns a value decoded from another raw value.
+ */
+final class DecodedValueCache {
+    private final ConcurrentMap<Type, ConcurrentMap<String, Entry>> valuesByType = new ConcurrentHashMap<>();
+
+    /**
+     * @return Entry for the value decoded from rawValue or null if not cached
+     */
+    Entry get(String key, Type type, Object rawValue) {
+        ConcurrentMap<String, Entry> values = valuesByType.get(type);
+        if (values == null) {
+            return null;
+        }
+        Entry entry = values.get(key);
+        return entry != null && entry.rawValue == rawValue ? entry : null;
+    }
+
+    /**
+     * @param lookups Keys looked up while interpolating rawValue
+     */
+    void put(String key, Type type, Object rawValue, Object value, Set<String> lookups) {
+        valuesByType.computeIfAbsent(type, t -> new ConcurrentHashMap<>()).put(key, new Entry(rawValue, value, lookups));
+    }
+
+    void clear() {
+        valuesByType.clear();
+    }
+
+    static final class Entry {
+        private final Object rawValue;
+        private final Object value;
+        private final Set<String> lookups;
+
+        Entry(Object rawValue, Object value, Set<String> lookups) {
+            this.rawValue = rawValue;
+            this.value = value;
+            this.lookups = lookups;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        Set<String> getLookups() {
+            return lookups;
+        }
+    }
+}
@@ -16,18 +16,27 @@
 package com.netflix.archaius.config;
 
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 import com.netflix.archaius.util.Maps;
+import com.netflix.archaius.util.PersistentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
 import com.netflix.archaius.api.ConfigListener;
 import com.netflix.archaius.api.exceptions.ConfigException;
 
@@ -50,14 +59,23 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
      */
     public static class Builder {
         LinkedHashMap<String, Config> configs = new LinkedHashMap<>();
+        boolean lazy;
         
         public Builder withConfig(String name, Config config) {
             configs.put(name, config);
             return this;
         }
+
+        /**
+         * Merge the children's properties when they are first read after a change instead of on every change
+         */
+        public Builder withLazyMerge() {
+            this.lazy = true;
+            return this;
+        }
         
         public com.netflix.archaius.api.config.CompositeConfig build() throws ConfigException {
-            com.netflix.archaius.api.config.CompositeConfig config = new DefaultCompositeConfig();
+            com.netflix.archaius.api.config.CompositeConfig config = new DefaultCompositeConfig(false, lazy);
             for (Entry<String, Config> entry : configs.entrySet()) {
                 config.addConfig(entry.getKey(), entry.getValue());
             }
@@ -75,23 +93,28 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
     
     private class State {
         private final Map<String, Config> children;
+        /**
+         * Configs whose properties are merged, which are the children with lazy composites replaced by their sources
+         */
+        private final List<Config> sources;
         private final CachedState cachedState;
         
-        public State(Map<String, Config> children, int size) {
+        public State(Map<String, Config> children) {
             this.children = children;
-            Map<String, Object> data = Maps.newHashMap(size);
-            Map<String, Config> instrumentedKeys = new HashMap<>();
-            for (Config child : children.values()) {
+            this.sources = sourcesOf(children);
+            PersistentMap.Builder<String, Object> data = PersistentMap.builder();
+            PersistentMap.Builder<String, Config> instrumentedKeys = PersistentMap.builder();
+            for (Config child : sources) {
                 boolean instrumented = child.instrumentationEnabled();
                 child.forEachPropertyUninstrumented(
                         (k, v) -> updateData(data, instrumentedKeys, k, v, child, instrumented));
             }
-            this.cachedState = new CachedState(data, instrumentedKeys);
+            this.cachedState = new CachedState(data.build(), instrumentedKeys.build());
         }
 
         private void updateData(
-                Map<String, Object> data,
-                Map<String, Config> instrumentedKeys,
+                PersistentMap.Builder<String, Object> data,
+                PersistentMap.Builder<String, Config> instrumentedKeys,
                 String key,
                 Object value,
                 Config childConfig,
@@ -113,22 +136,72 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
                 children.putAll(this.children);
                 children.put(name, config);
             }
-            Iterable<String> keysIterable = config.keys();
-            int size = keysIterable instanceof Collection<?> ? ((Collection<String>) keysIterable).size() : 16;
-            return new State(children, cachedState.getData().size() + size);
+            return withChildren(children);
         }
         
+        /**
+         * @param configs Configs to add in order, replacing any existing configs with the same names.  Configs with a
+         *      null value are only removed.
+         */
+        State putConfigs(Map<String, Config> configs) {
+            LinkedHashMap<String, Config> children = Maps.newLinkedHashMap(this.children.size() + configs.size());
+            if (reversed) {
+                List<Entry<String, Config>> entries = new ArrayList<>(configs.entrySet());
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    putIfNotNull(children, entries.get(i));
+                }
+            }
+            this.children.forEach((name, config) -> {
+                if (!configs.containsKey(name)) {
+                    children.put(name, config);
+                }
+            });
+            if (!reversed) {
+                configs.entrySet().forEach(entry -> putIfNotNull(children, entry));
+            }
+            return withChildren(children);
+        }
+
+        private void putIfNotNull(Map<String, Config> children, Entry<String, Config> entry) {
+            if (entry.getValue() != null) {
+                children.put(entry.getKey(), entry.getValue());
+            }
+        }
+
         State removeConfig(String name) {
             if (children.containsKey(name)) {
                 LinkedHashMap<String, Config> children = new LinkedHashMap<>(this.children);
                 children.remove(name);
-                return new State(children, cachedState.getData().size());
+                return withChildren(children);
             }
             return this;
         }
 
+        /**
+         * While a batch is in progress the merged properties are left as is until the batch completes
+         */
+        private State withChildren(Map<String, Config> children) {
+            return lazy || pending.get() != null
+                    ? new State(children, sourcesOf(children), cachedState)
+                    : new State(children);
+        }
+
         public State refresh() {
-            return new State(children, cachedState.getData().size());
+            return new State(children);
+        }
+
+        /**
+         * @param changed Receives the keys whose merged value changed
+         * @return A new state even if no merged value changed, see {@link #updateState}
+         */
+        State applyChange(ConfigChange change, Set<String> changed) {
+            return new State(children, sources, cachedState.withKeysMergedFrom(change.getKeys(), sources, changed));
+        }
+
+        private State(Map<String, Config> children, List<Config> sources, CachedState cachedState) {
+            this.children = children;
+            this.sources = sources;
+            this.cachedState = cachedState;
         }
 
 
@@ -141,6 +214,105 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
         }
     }
 
+    /**
+     * Children that are lazy composites are only logical groupings, so their sources are merged directly as if they
+     * were children of this composite.  A change to one of those sources is then merged once into this composite's
+     * state instead of into every composite along the way.
+     *
+     * @return Configs to merge in order of precedence
+     */
+    private static List<Config> sourcesOf(Map<String, Config> children) {
+        List<Config> sources = new ArrayList<>(children.size());
+        addSources(children.values(), sources);
+        return sources;
+    }
+
+    private static void addSources(Collection<Config> children, List<Config> sources) {
+        for (Config child : children) {
+            if (child instanceof DefaultCompositeConfig && ((DefaultCompositeConfig) child).lazy) {
+                addSources(((DefaultCompositeConfig) child).state.get().children.values(), sources);
+            } else {
+                sources.add(child);
+            }
+        }
+    }
+
+    /**
+     * Merged state of a lazy composite that is built from the children when first read.  Readers race to run the
+     * task and only the first one builds the state while the others wait for it, so the state is built at most once
+     * no matter how many readers there are.
+     */
+    private static final class LazyMerge extends FutureTask<CachedState> {
+        private final Map<String, Config> children;
+        private final CachedState base;
+        private final ConfigChange change;
+
+        /**
+         * @param base Last merged state
+         * @param change Changes to the children since base was merged, or unknown if it must be rebuilt
+         */
+        LazyMerge(Map<String, Config> children, CachedState base, ConfigChange change, Callable<CachedState> merge) {
+            super(merge);
+            this.children = children;
+            this.base = base;
+            this.change = change;
+        }
+
+        CachedState getMerged() {
+            run();
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw new IllegalStateException("Failed to merge properties", e.getCause());
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * @return The merged state or null if it has not been built yet or the build failed
+         */
+        CachedState getIfMerged() {
+            if (!isDone()) {
+                return null;
+            }
+            try {
+                return get();
+            } catch (InterruptedException | ExecutionException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Look up the merged value of a key without building the merged state.  Keys that did not change since the
+         * last merge are taken from it and others from the first child containing them.
+         */
+        Object peek(String key) {
+            if (change.isKnown() && !change.getKeys().contains(key)) {
+                return base.getData().get(key);
+            }
+            for (Config child : children.values()) {
+                Object value = child.getRawPropertyUninstrumented(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * Listener to be added to any component configs which updates the config map and triggers updates on all listeners
      * when any of the components are updated.
@@ -152,20 +324,24 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
 
         @Override
         public void onSourceConfigAdded(DefaultCompositeConfig dcc, Config config) {
-            dcc.refreshState();
-            dcc.notifyConfigAdded(dcc);
+            if (dcc.refreshState()) {
+                dcc.notifyConfigAdded(dcc);
+            }
         }
 
         @Override
         public void onSourceConfigRemoved(DefaultCompositeConfig dcc, Config config) {
-            dcc.refreshState();
-            dcc.notifyConfigRemoved(dcc);
+            if (dcc.refreshState()) {
+                dcc.notifyConfigRemoved(dcc);
+            }
         }
 
         @Override
-        public void onSourceConfigUpdated(DefaultCompositeConfig dcc, Config config) {
-            dcc.refreshState();
-            dcc.notifyConfigUpdated(dcc);
+        public void onSourceConfigUpdated(DefaultCompositeConfig dcc, Config config, ConfigChange change) {
+            ConfigChange merged = dcc.applyChange(change);
+            if (!merged.isEmpty()) {
+                dcc.notifyConfigUpdated(dcc, merged);
+            }
         }
 
         @Override
@@ -176,34 +352,250 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
     
     private final ConfigListener listener;
     private final boolean reversed;
-    private volatile State state;
+    private final boolean lazy;
+    private final AtomicReference<State> state = new AtomicReference<>();
+    private final AtomicReference<LazyMerge> merge = new AtomicReference<>();
+    /**
+     * Batch in progress on the current thread, if any
+     */
+    private final ThreadLocal<PendingChanges> pending = new ThreadLocal<>();
+
     public DefaultCompositeConfig() {
         this(false);
     }
     
     public DefaultCompositeConfig(boolean reversed) {
+        this(reversed, false);
+    }
+
+    /**
+     * @param lazy Merge the children's properties when they are first read after a change instead of on every change.
+     *      Suited to intermediate composites whose merged properties are rarely read as a whole.  Notifications then
+     *      report the keys that changed in the children, including those shadowed by another child.
+     */
+    public DefaultCompositeConfig(boolean reversed, boolean lazy) {
         this.reversed = reversed;
+        this.lazy = lazy;
         this.listener = new CompositeConfigListener(this);
         
-        this.state = new State(Collections.emptyMap(), 0);
+        this.state.set(new State(Collections.emptyMap()));
+        if (lazy) {
+            deferMerge(ConfigChange.empty());
+        }
     }
 
     @Override
     CachedState getState() {
-        return state.cachedState;
+        LazyMerge merge = this.merge.get();
+        return merge == null ? state.get().cachedState : merge.getMerged();
+    }
+
+    /**
+     * Changed keys are looked up in the children while the merge is pending, so that a parent merging these keys
+     * doesn't force the whole merge
+     */
+    @Override
+    public Object getRawPropertyUninstrumented(String key) {
+        LazyMerge merge = this.merge.get();
+        if (merge != null && !merge.isDone()) {
+            return merge.peek(key);
+        }
+        return super.getRawPropertyUninstrumented(key);
+    }
+
+    /**
+     * A lazy composite is instrumented if any of its sources is, so that views of it checking the flag on every change
+     * don't force the pending merge.  Unlike the merged state this includes sources whose keys are all shadowed by
+     * other sources, which only means that reads are passed on to {@link #recordUsage} for keys it doesn't track.
+     */
+    @Override
+    public boolean instrumentationEnabled() {
+        if (!lazy) {
+            return super.instrumentationEnabled();
+        }
+        for (Config source : state.get().sources) {
+            if (source.instrumentationEnabled()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void refreshState() {
-        this.state = state.refresh();
+    /**
+     * Replace the pending merge of a lazy composite with one that also includes the change.  The new merge starts
+     * from the last merged state so that a merge still pending is never waited for.
+     */
+    private void deferMerge(ConfigChange change) {
+        while (true) {
+            LazyMerge previous = merge.get();
+            Map<String, Config> children = state.get().children;
+            CachedState base = previous == null ? state.get().cachedState : previous.getIfMerged();
+            ConfigChange changes = change;
+            if (base == null) {
+                base = previous.base;
+                changes = ConfigChange.combine(previous.change, change);
+            }
+            CachedState from = base;
+            ConfigChange merged = changes;
+            LazyMerge next = new LazyMerge(children, base, changes, () -> merged.isKnown()
+                    ? from.withKeysMergedFrom(merged.getKeys(), sourcesOf(children), new HashSet<>())
+                    : new State(children).cachedState);
+            if (merge.compareAndSet(previous, next)) {
+                return;
+            }
+        }
     }
 
+    /**
+     * Replace the state with one derived from the current state, retrying if it was replaced concurrently.  No lock is
+     * held while the children are read, so updates always produce a new instance and an update derived from a state
+     * that was replaced in the meantime, possibly from values read before a child changed, is never published.
+     *
+     * @param update Derives the new state, which must not have side effects as it may be called more than once
+     * @return The state that was replaced
+     */
+    private State updateState(UnaryOperator<State> update) {
+        while (true) {
+            State previous = state.get();
+            if (state.compareAndSet(previous, update.apply(previous))) {
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return False if the refresh was deferred until the current batch completes
+     */
+    private boolean refreshState() {
+        PendingChanges batch = pending.get();
+        if (batch != null) {
+            batch.childrenChanged();
+            return false;
+        }
+        if (lazy) {
+            deferMerge(ConfigChange.unknown());
+        } else {
+            updateState(State::refresh);
+        }
+        return true;
+    }
+
+    /**
+     * Update the state with a change in one of the children.  Only the changed keys are merged again, unless the
+     * affected keys are unknown in which case the state is rebuilt from all children.
+     *
+     * @return Keys whose merged value changed, which may be empty
+     */
+    private ConfigChange applyChange(ConfigChange change) {
+        PendingChanges batch = pending.get();
+        if (batch != null) {
+            batch.childUpdated(change);
+            return ConfigChange.empty();
+        }
+        if (lazy) {
+            if (!change.isEmpty()) {
+                deferMerge(change);
+            }
+            // The child's values may be shadowed by another child
+            return change.isKnown() ? ConfigChange.of(change.getKeys()) : change;
+        }
+        AtomicReference<ConfigChange> merged = new AtomicReference<>();
+        updateState(previous -> {
+            if (!change.isKnown()) {
+                State next = previous.refresh();
+                merged.set(next.cachedState.changesSince(previous.cachedState));
+                return next;
+            }
+            Set<String> changed = new HashSet<>();
+            State next = previous.applyChange(change, changed);
+            merged.set(ConfigChange.of(changed, previous.cachedState.getData(), next.cachedState.getData()));
+            return next;
+        });
+        return merged.get();
+    }
+
+    /**
+     * Replace the children.  Listeners are added to the new children before the state is published so that none of
+     * their updates is missed, and removed from children that are no longer part of the composite afterwards.  The
+     * merge is deferred if the composite is lazy or a batch is in progress.
+     *
+     * @param added Configs that may be added by the update
+     * @param update Derives the new state from the current one, returning the current one if nothing changes
+     * @return Keys whose merged value changed or null if the children did not change
+     */
+    private ConfigChange updateChildren(Collection<Config> added, UnaryOperator<State> update) {
+        for (Config child : added) {
+            child.setStrInterpolator(getStrInterpolator());
+            child.setDecoder(getDecoder());
+            child.addListener(listener);
+        }
+        State previous;
+        State next;
+        do {
+            previous = state.get();
+            next = update.apply(previous);
+        } while (!state.compareAndSet(previous, next));
+
+        Collection<Config> children = next.children.values();
+        for (Config child : added) {
+            if (!children.contains(child)) {
+                child.removeListener(listener);
+            }
+        }
+        if (next == previous) {
+            return null;
+        }
+        for (Config child : previous.children.values()) {
+            if (!children.contains(child)) {
+                child.removeListener(listener);
+            }
+        }
+
+        PendingChanges batch = pending.get();
+        if (batch != null) {
+            batch.childrenChanged();
+            return ConfigChange.empty();
+        }
+        if (lazy) {
+            deferMerge(ConfigChange.unknown());
+            return ConfigChange.unknown();
+        }
+        return next.cachedState.changesSince(previous.cachedState);
+    }
+
+    /**
+     * Children added, replaced or removed and child updates made by the thread applying the batch are merged once the
+     * batch completes, followed by a single onConfigUpdated event with the keys whose merged value changed instead of
+     * an event per change.  Changes made by other threads are merged as they happen, and no lock is held while the
+     * updates are applied.
+     */
+    @Override
+    public void batchUpdates(Updates updates) throws ConfigException {
+        PendingChanges batch = pending.get();
+        if (batch == null) {
+            batch = new PendingChanges();
+            pending.set(batch);
+        }
+        batch.open();
+        try {
+            updates.apply(this);
+        } finally {
+            if (batch.close()) {
+                pending.remove();
+                ConfigChange change = applyChange(batch.drain());
+                if (!change.isEmpty()) {
+                    notifyConfigUpdated(this, change);
+                }
+            }
+        }
+    }
 
     @Override
-    public synchronized boolean addConfig(String name, Config child) throws ConfigException {
+    public boolean addConfig(String name, Config child) throws ConfigException {
         return internalAddConfig(name, child);
     }
     
-    private synchronized boolean internalAddConfig(String name, Config child) throws ConfigException {
+    private boolean internalAddConfig(String name, Config child) throws ConfigException {
         LOG.info("Adding config {} to {}", name, hashCode());
         
         if (child == null) {
@@ -215,78 +607,113 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
             throw new ConfigException("Child configuration must be named");
         }
         
-        if (state.containsConfig(name)) {
+        if (state.get().containsConfig(name)
+                || updateChildren(Collections.singleton(child),
+                        current -> current.containsConfig(name) ? current : current.addConfig(name, child)) == null) {
             LOG.info("Configuration with name'{}' already exists", name);
             return false;
         }
 
-        state = state.addConfig(name, child);
-        postConfigAdded(child);
+        if (pending.get() == null) {
+            notifyConfigAdded(child);
+        }
         return true;
     }
     
+    /**
+     * Configs are added with a single rebuild of the merged state and a single onConfigUpdated event
+     */
     @Override
-    public synchronized void addConfigs(LinkedHashMap<String, Config> configs) throws ConfigException {
+    public void addConfigs(LinkedHashMap<String, Config> configs) throws ConfigException {
+        LinkedHashMap<String, Config> added = Maps.newLinkedHashMap(configs.size());
         for (Entry<String, Config> entry : configs.entrySet()) {
-            internalAddConfig(entry.getKey(), entry.getValue());
+            if (entry.getValue() == null) {
+                continue;
+            }
+            if (state.get().containsConfig(entry.getKey())) {
+                LOG.info("Configuration with name'{}' already exists", entry.getKey());
+                continue;
+            }
+            added.put(entry.getKey(), entry.getValue());
         }
+        putConfigs(added);
     }
 
+    /**
+     * Configs are replaced with a single rebuild of the merged state and a single onConfigUpdated event, so readers
+     * never observe some of the configs replaced and others not.  Replaced configs take precedence as if they were
+     * removed and added again, and a null config removes the existing config with that name.
+     */
     @Override
     public void replaceConfigs(LinkedHashMap<String, Config> configs) throws ConfigException {
+        putConfigs(configs);
+    }
+
+    private void putConfigs(Map<String, Config> configs) throws ConfigException {
         for (Entry<String, Config> entry : configs.entrySet()) {
-            replaceConfig(entry.getKey(), entry.getValue());
+            if (entry.getKey() == null && entry.getValue() != null) {
+                throw new ConfigException("Child configuration must be named");
+            }
+        }
+        if (configs.isEmpty()) {
+            return;
+        }
+
+        List<Config> added = new ArrayList<>(configs.size());
+        configs.forEach((name, child) -> {
+            if (child != null) {
+                LOG.info("Adding config {} to {}", name, hashCode());
+                added.add(child);
+            }
+        });
+        ConfigChange change = updateChildren(added, current -> current.putConfigs(configs));
+        if (change != null && !change.isEmpty()) {
+            notifyConfigUpdated(this, change);
         }
     }
 
     @Override
-    public synchronized Collection<String> getConfigNames() {
-        return state.children.keySet();
-    }
-    
-    protected void postConfigAdded(Config child) {
-        child.setStrInterpolator(getStrInterpolator());
-        child.setDecoder(getDecoder());
-        notifyConfigAdded(child);
-        child.addListener(listener);
+    public Collection<String> getConfigNames() {
+        return state.get().children.keySet();
     }
 
     @Override
-    public synchronized void replaceConfig(String name, Config child) throws ConfigException {
-        internalRemoveConfig(name);
-        internalAddConfig(name, child);
+    public void replaceConfig(String name, Config child) throws ConfigException {
+        putConfigs(Collections.singletonMap(name, child));
     }
 
     @Override
-    public synchronized Config removeConfig(String name) {
+    public Config removeConfig(String name) {
         return internalRemoveConfig(name);
     }
     
-    public synchronized Config internalRemoveConfig(String name) {
-        Config child = state.getConfig(name);
-        if (child != null) {
-            state = state.removeConfig(name);
-            child.removeListener(listener);
-            this.notifyConfigRemoved(child);
-        }
-        return child;
+    public Config internalRemoveConfig(String name) {
+        AtomicReference<Config> child = new AtomicReference<>();
+        updateChildren(Collections.emptyList(), current -> {
+            child.set(current.getConfig(name));
+            return current.removeConfig(name);
+        });
+        if (child.get() != null && pending.get() == null) {
+            this.notifyConfigRemoved(child.get());
+        }
+        return child.get();
     }    
 
     @Override
     public Config getConfig(String name) {
-        return state.children.get(name);
+        return state.get().children.get(name);
     }
 
     @Override
-    public synchronized <T> T accept(Visitor<T> visitor) {
+    public <T> T accept(Visitor<T> visitor) {
         AtomicReference<T> result = new AtomicReference<>(null);
         if (visitor instanceof CompositeVisitor) {
             CompositeVisitor<T> cv = (CompositeVisitor<T>)visitor;
-            state.children.forEach((key, config) -> {
+            state.get().children.forEach((key, config) -> {
                 result.set(cv.visitChild(key, config));
             });
         } else {
-            state.cachedState.getData().forEach(visitor::visitKey);
+            getState().getData().forEach(visitor::visitKey);
         }
         return result.get();
     }
@@ -301,6 +728,6 @@ public class DefaultCompositeConfig extends AbstractDependentConfig implements c
 
     @Override
     public String toString() {
-        return "[" + String.join(" ", state.children.keySet()) + "]";
+        return "[" + String.join(" ", state.get().children.keySet()) + "]";
     }
 }
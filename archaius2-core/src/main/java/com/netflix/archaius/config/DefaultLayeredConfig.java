@@ -1,10 +1,13 @@
 package com.netflix.archaius.config;
 
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
 import com.netflix.archaius.api.ConfigListener;
 import com.netflix.archaius.api.Layer;
 import com.netflix.archaius.api.config.LayeredConfig;
 
+import com.netflix.archaius.util.PersistentMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,11 +15,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -30,7 +36,12 @@ public class DefaultLayeredConfig extends AbstractDependentConfig implements Lay
     private static final Logger LOG = LoggerFactory.getLogger(DefaultLayeredConfig.class);
     
     private final ConfigListener listener;
-    private volatile ImmutableCompositeState state = new ImmutableCompositeState(Collections.emptyList());
+    private final AtomicReference<ImmutableCompositeState> state =
+            new AtomicReference<>(new ImmutableCompositeState(Collections.emptyList()));
+    /**
+     * Batch in progress on the current thread, if any
+     */
+    private final ThreadLocal<PendingChanges> pending = new ThreadLocal<>();
 
     /**
      * Listener to be added to any component configs which updates the config map and triggers updates on all listeners
@@ -43,20 +54,24 @@ public class DefaultLayeredConfig extends AbstractDependentConfig implements Lay
 
         @Override
         public void onSourceConfigAdded(DefaultLayeredConfig dlc, Config config) {
-            dlc.refreshState();
-            dlc.notifyConfigUpdated(dlc);
+            if (dlc.refreshState()) {
+                dlc.notifyConfigUpdated(dlc);
+            }
         }
 
         @Override
         public void onSourceConfigRemoved(DefaultLayeredConfig dlc, Config config) {
-            dlc.refreshState();
-            dlc.notifyConfigUpdated(dlc);
+            if (dlc.refreshState()) {
+                dlc.notifyConfigUpdated(dlc);
+            }
         }
 
         @Override
-        public void onSourceConfigUpdated(DefaultLayeredConfig dlc, Config config) {
-            dlc.refreshState();
-            dlc.notifyConfigUpdated(dlc);
+        public void onSourceConfigUpdated(DefaultLayeredConfig dlc, Config config, ConfigChange change) {
+            ConfigChange merged = dlc.applyChange(change);
+            if (!merged.isEmpty()) {
+                dlc.notifyConfigUpdated(dlc, merged);
+            }
         }
 
         @Override
@@ -74,45 +89,219 @@ public class DefaultLayeredConfig extends AbstractDependentConfig implements Lay
         this.listener = new LayeredConfigListener(this);
     }
     
-    private void refreshState() {
-        this.state = state.refresh();
+    /**
+     * Replace the state with one derived from the current state, retrying if it was replaced concurrently.  No lock is
+     * held while the children are read, so updates always produce a new instance and an update derived from a state
+     * that was replaced in the meantime, possibly from values read before a child changed, is never published.
+     *
+     * @param update Derives the new state, which must not have side effects as it may be called more than once
+     * @return The state that was replaced
+     */
+    private ImmutableCompositeState updateState(UnaryOperator<ImmutableCompositeState> update) {
+        while (true) {
+            ImmutableCompositeState previous = state.get();
+            if (state.compareAndSet(previous, update.apply(previous))) {
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return False if the refresh was deferred until the current batch completes
+     */
+    private boolean refreshState() {
+        PendingChanges batch = pending.get();
+        if (batch != null) {
+            batch.childrenChanged();
+            return false;
+        }
+        updateState(ImmutableCompositeState::refresh);
+        return true;
+    }
+
+    /**
+     * While a batch is in progress the merged properties are left as is until the batch completes
+     */
+    private ImmutableCompositeState withChildren(ImmutableCompositeState current, List<LayerAndConfig> children) {
+        if (pending.get() != null) {
+            children.sort(ByPriorityAndInsertionOrder);
+            return new ImmutableCompositeState(children, current.cachedState);
+        }
+        return new ImmutableCompositeState(children);
+    }
+
+    /**
+     * Update the state with a change in one of the children.  Only the changed keys are merged again, unless the
+     * affected keys are unknown in which case the state is rebuilt from all children.
+     *
+     * @return Keys whose merged value changed, which may be empty
+     */
+    private ConfigChange applyChange(ConfigChange change) {
+        PendingChanges batch = pending.get();
+        if (batch != null) {
+            batch.childUpdated(change);
+            return ConfigChange.empty();
+        }
+        AtomicReference<ConfigChange> merged = new AtomicReference<>();
+        updateState(previous -> {
+            if (!change.isKnown()) {
+                ImmutableCompositeState next = previous.refresh();
+                merged.set(next.cachedState.changesSince(previous.cachedState));
+                return next;
+            }
+            Set<String> changed = new HashSet<>();
+            ImmutableCompositeState next = previous.applyChange(change, changed);
+            merged.set(ConfigChange.of(changed, previous.cachedState.getData(), next.cachedState.getData()));
+            return next;
+        });
+        return merged.get();
+    }
+
+    /**
+     * Replace the children.  Listeners are added to the new children before the state is published so that none of
+     * their updates is missed, and removed from children that are no longer part of the config afterwards.  The merge
+     * is deferred if a batch is in progress.
+     *
+     * @param added Configs that may be added by the update
+     * @param update Derives the new state from the current one
+     * @return Keys whose merged value changed
+     */
+    private ConfigChange updateChildren(
+            Collection<Config> added, UnaryOperator<ImmutableCompositeState> update) {
+        for (Config child : added) {
+            child.setStrInterpolator(getStrInterpolator());
+            child.setDecoder(getDecoder());
+            child.addListener(listener);
+        }
+        ImmutableCompositeState previous;
+        ImmutableCompositeState next;
+        do {
+            previous = state.get();
+            next = update.apply(previous);
+        } while (!state.compareAndSet(previous, next));
+
+        Set<Config> children = next.children.stream().map(LayerAndConfig::getConfig).collect(Collectors.toSet());
+        for (LayerAndConfig child : previous.children) {
+            if (!children.contains(child.config)) {
+                child.config.removeListener(listener);
+            }
+        }
+
+        PendingChanges batch = pending.get();
+        if (batch != null) {
+            batch.childrenChanged();
+            return ConfigChange.empty();
+        }
+        return next.cachedState.changesSince(previous.cachedState);
     }
 
+    /**
+     * Configs added or removed and child updates made by the thread applying the batch are merged once the batch
+     * completes, followed by a single onConfigUpdated event with the keys whose merged value changed instead of an
+     * event per change.  Changes made by other threads are merged as they happen, and no lock is held while the
+     * updates are applied.
+     */
     @Override
-    public synchronized void addConfig(Layer layer, Config config) {
+    public void batchUpdates(Consumer<LayeredConfig> updates) {
+        PendingChanges batch = pending.get();
+        if (batch == null) {
+            batch = new PendingChanges();
+            pending.set(batch);
+        }
+        batch.open();
+        try {
+            updates.accept(this);
+        } finally {
+            if (batch.close()) {
+                pending.remove();
+                ConfigChange change = applyChange(batch.drain());
+                if (!change.isEmpty()) {
+                    notifyConfigUpdated(this, change);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addConfig(Layer layer, Config config) {
         addConfig(layer, config, insertionOrderCounter.incrementAndGet());
     }
     
     @Override
-    public synchronized void addConfig(Layer layer, Config child, int position) {
+    public void addConfig(Layer layer, Config child, int position) {
         LOG.info("Adding property source '{}' at layer '{}'", child.getName(), layer);
         
         if (child == null) {
             return;
         }
         
-        state = state.addChild(new LayerAndConfig(layer, child, position));
-        child.setStrInterpolator(getStrInterpolator());
-        child.setDecoder(getDecoder());
-        notifyConfigUpdated(this);
-        child.addListener(listener);
+        LayerAndConfig added = new LayerAndConfig(layer, child, position);
+        ConfigChange change = updateChildren(
+                Collections.singleton(child), current -> withChildren(current, current.withChild(added)));
+        if (pending.get() == null) {
+            notifyConfigUpdated(this, change);
+        }
     }
     
+    /**
+     * Configs are added with a single rebuild of the merged state and a single onConfigUpdated event
+     */
+    @Override
+    public void addConfigs(Layer layer, Collection<Config> configs) {
+        putConfigs(layer, configs, false);
+    }
+
+    /**
+     * Configs are replaced with a single rebuild of the merged state and a single onConfigUpdated event
+     */
+    @Override
+    public void replaceConfigs(Layer layer, Collection<Config> configs) {
+        putConfigs(layer, configs, true);
+    }
+
+    private void putConfigs(Layer layer, Collection<Config> configs, boolean replace) {
+        List<LayerAndConfig> added = new ArrayList<>(configs.size());
+        for (Config child : configs) {
+            if (child != null) {
+                LOG.info("Adding property source '{}' at layer '{}'", child.getName(), layer);
+                added.add(new LayerAndConfig(layer, child, insertionOrderCounter.incrementAndGet()));
+            }
+        }
+        ConfigChange change = updateChildren(
+                added.stream().map(LayerAndConfig::getConfig).collect(Collectors.toList()),
+                current -> {
+                    List<LayerAndConfig> children = new ArrayList<>(current.children.size() + added.size());
+                    for (LayerAndConfig child : current.children) {
+                        if (!replace || !child.layer.equals(layer)) {
+                            children.add(child);
+                        }
+                    }
+                    children.addAll(added);
+                    return withChildren(current, children);
+                });
+        if (!change.isEmpty()) {
+            notifyConfigUpdated(this, change);
+        }
+    }
+
     @Override
     public Collection<Config> getConfigsAtLayer(Layer layer) {
-        return state.children.stream()
+        return state.get().children.stream()
                 .filter(holder -> holder.layer.equals(layer))
                 .map(holder -> holder.config)
                 .collect(Collectors.toList());
     }
 
     @Override
-    public synchronized Optional<Config> removeConfig(Layer layer, String name) {
+    public Optional<Config> removeConfig(Layer layer, String name) {
         LOG.info("Removing property source '{}' from layer '{}'", name, layer);
-        Optional<Config> previous = state.findChild(layer, name);
+        Optional<Config> previous = state.get().findChild(layer, name);
         if (previous.isPresent()) {
-            this.state = state.removeChild(layer, name);
-            this.notifyConfigUpdated(this);
+            ConfigChange change = updateChildren(
+                    Collections.emptyList(), current -> withChildren(current, current.withoutChild(layer, name)));
+            if (pending.get() == null) {
+                notifyConfigUpdated(this, change);
+            }
         }
         return previous;
     }
@@ -199,19 +388,19 @@ public class DefaultLayeredConfig extends AbstractDependentConfig implements Lay
         ImmutableCompositeState(List<LayerAndConfig> entries) {
             this.children = entries;
             this.children.sort(ByPriorityAndInsertionOrder);
-            Map<String, Object> data = new HashMap<>();
-            Map<String, Config> instrumentedKeys = new HashMap<>();
+            PersistentMap.Builder<String, Object> data = PersistentMap.builder();
+            PersistentMap.Builder<String, Config> instrumentedKeys = PersistentMap.builder();
             for (LayerAndConfig child : children) {
                 boolean instrumented = child.config.instrumentationEnabled();
                 child.config.forEachPropertyUninstrumented(
                         (k, v) -> updateData(data, instrumentedKeys, k, v, child.config, instrumented));
             }
-            this.cachedState = new CachedState(data, instrumentedKeys);
+            this.cachedState = new CachedState(data.build(), instrumentedKeys.build());
         }
 
         private void updateData(
-                Map<String, Object> data,
-                Map<String, Config> instrumentedKeys,
+                PersistentMap.Builder<String, Object> data,
+                PersistentMap.Builder<String, Config> instrumentedKeys,
                 String key,
                 Object value,
                 Config childConfig,
@@ -224,19 +413,19 @@ public class DefaultLayeredConfig extends AbstractDependentConfig implements Lay
             }
         }
         
-        public ImmutableCompositeState addChild(LayerAndConfig layerAndConfig) {
+        List<LayerAndConfig> withChild(LayerAndConfig layerAndConfig) {
             List<LayerAndConfig> newChildren = new ArrayList<>(this.children);
             newChildren.add(layerAndConfig);
-            return new ImmutableCompositeState(newChildren);
+            return newChildren;
         }
 
-        public ImmutableCompositeState removeChild(Layer layer, String name) {
+        List<LayerAndConfig> withoutChild(Layer layer, String name) {
             List<LayerAndConfig> newChildren = new ArrayList<>(this.children.size());
             this.children.stream()
                 .filter(source -> !(source.getLayer().equals(layer) && source.getConfig().getName() != null))
                 .forEach(newChildren::add);
             newChildren.sort(ByPriorityAndInsertionOrder);
-            return new ImmutableCompositeState(newChildren);
+            return newChildren;
         }
         
         public Optional<Config> findChild(Layer layer, String name) {
@@ -250,10 +439,25 @@ public class DefaultLayeredConfig extends AbstractDependentConfig implements Lay
         ImmutableCompositeState refresh() {
             return new ImmutableCompositeState(children);
         }
+
+        /**
+         * @param changed Receives the keys whose merged value changed
+         * @return A new state even if no merged value changed, see {@link DefaultLayeredConfig#updateState}
+         */
+        ImmutableCompositeState applyChange(ConfigChange change, Set<String> changed) {
+            List<Config> configs = children.stream().map(LayerAndConfig::getConfig).collect(Collectors.toList());
+            return new ImmutableCompositeState(
+                    children, cachedState.withKeysMergedFrom(change.getKeys(), configs, changed));
+        }
+
+        private ImmutableCompositeState(List<LayerAndConfig> children, CachedState cachedState) {
+            this.children = children;
+            this.cachedState = cachedState;
+        }
     }
 
     @Override
     public CachedState getState() {
-        return state.cachedState;
+        return state.get().cachedState;
     }
 }
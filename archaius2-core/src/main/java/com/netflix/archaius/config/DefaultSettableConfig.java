@@ -16,19 +16,24 @@
 package com.netflix.archaius.config;
 
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
 import com.netflix.archaius.api.config.SettableConfig;
-import com.netflix.archaius.util.Maps;
+import com.netflix.archaius.util.PersistentMap;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class DefaultSettableConfig extends AbstractConfig implements SettableConfig {
-    private volatile Map<String, Object> props = Collections.emptyMap();
+    private volatile PersistentMap<String, Object> props = PersistentMap.empty();
     
     public DefaultSettableConfig(String name) {
         super(name);
@@ -40,25 +45,74 @@ public class DefaultSettableConfig extends AbstractConfig implements SettableCon
 
     @Override
     public synchronized <T> void setProperty(String propName, T propValue) {
-        Map<String, Object> copy = Maps.newHashMap(props.size() + 1);
-        copy.putAll(props);
-        copy.put(propName, propValue);
-        props = Collections.unmodifiableMap(copy);
-        notifyConfigUpdated(this);
+        Object previous = props.get(propName);
+        props = props.plus(propName, propValue);
+        notifyConfigUpdated(this, ConfigChange.of(propName, previous, propValue));
     }
 
     @Override
     public void clearProperty(String propName) {
         if (props.containsKey(propName)) {
             synchronized (this) {
-                Map<String, Object> copy = new HashMap<>(props);
-                copy.remove(propName);
-                props = Collections.unmodifiableMap(copy);
-                notifyConfigUpdated(this);
+                Object previous = props.get(propName);
+                props = props.minus(propName);
+                notifyConfigUpdated(this, ConfigChange.of(propName, previous, null));
             }
         }
     }
 
+    /**
+     * The changes are recorded and then published as a single new version of the properties, which copies only the
+     * changed entries, followed by one notification of the keys whose value actually changed.  Changes are not visible
+     * until the transaction completes and a transaction that throws leaves the properties unchanged.  Setting a null
+     * value clears the property.
+     */
+    @Override
+    public void update(Consumer<Transaction> updates) {
+        Map<String, Optional<Object>> changes = new LinkedHashMap<>();
+        updates.accept(new Transaction() {
+            @Override
+            public <T> Transaction set(String propName, T propValue) {
+                changes.put(propName, Optional.ofNullable(propValue));
+                return this;
+            }
+
+            @Override
+            public Transaction clear(String propName) {
+                changes.put(propName, Optional.empty());
+                return this;
+            }
+        });
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            PersistentMap<String, Object> previous = props;
+            PersistentMap.Builder<String, Object> copy = previous.toBuilder();
+            Set<String> keys = new HashSet<>();
+            changes.forEach((key, value) -> {
+                if (value.isPresent()) {
+                    copy.put(key, value.get());
+                } else {
+                    copy.remove(key);
+                }
+                if (!Objects.equals(previous.get(key), value.orElse(null))) {
+                    keys.add(key);
+                }
+            });
+            if (!keys.isEmpty()) {
+                props = copy.build();
+                notifyConfigUpdated(this, ConfigChange.of(keys, previous, props));
+            }
+        }
+    }
+
+    @Override
+    public Config snapshot() {
+        return new SnapshotConfig(this, props);
+    }
+
     @Override
     public boolean containsKey(String key) {
         return props.containsKey(key);
@@ -88,13 +142,15 @@ public class DefaultSettableConfig extends AbstractConfig implements SettableCon
     public void setProperties(Properties src) {
         if (null != src) {
             synchronized (this) {
-                Map<String, Object> copy = Maps.newHashMap(props.size() + src.size());
-                copy.putAll(props);
+                PersistentMap<String, Object> previous = props;
+                PersistentMap.Builder<String, Object> copy = previous.toBuilder();
+                Set<String> keys = new HashSet<>();
                 for (Entry<Object, Object> prop : src.entrySet()) {
                     copy.put(prop.getKey().toString(), prop.getValue());
+                    keys.add(prop.getKey().toString());
                 }
-                props = Collections.unmodifiableMap(copy);
-                notifyConfigUpdated(this);
+                props = copy.build();
+                notifyConfigUpdated(this, ConfigChange.of(keys, previous, props));
             }
         }
     }
@@ -103,10 +159,15 @@ public class DefaultSettableConfig extends AbstractConfig implements SettableCon
     public void setProperties(Config src) {
         if (null != src) {
             synchronized (this) {
-                Map<String, Object> copy = new HashMap<>(props);
-                src.forEachProperty(copy::put);
-                props = Collections.unmodifiableMap(copy);
-                notifyConfigUpdated(this);
+                PersistentMap<String, Object> previous = props;
+                PersistentMap.Builder<String, Object> copy = previous.toBuilder();
+                Set<String> keys = new HashSet<>();
+                src.forEachProperty((key, value) -> {
+                    copy.put(key, value);
+                    keys.add(key);
+                });
+                props = copy.build();
+                notifyConfigUpdated(this, ConfigChange.of(keys, previous, props));
             }
         }
     }
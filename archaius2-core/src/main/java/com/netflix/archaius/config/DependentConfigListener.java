@@ -1,7 +1,8 @@
 package com.netflix.archaius.config;
 
 import com.netflix.archaius.api.Config;
-import com.netflix.archaius.api.ConfigListener;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
@@ -14,7 +15,7 @@ import java.util.Optional;
  *
  * @param <T> The type of the dependent config
  */
-abstract class DependentConfigListener<T extends AbstractConfig> implements ConfigListener {
+abstract class DependentConfigListener<T extends AbstractConfig> implements ConfigChangeListener {
     private final Reference<T> dependentConfigRef;
 
     DependentConfigListener(T dependentConfig) {
@@ -32,8 +33,8 @@ abstract class DependentConfigListener<T extends AbstractConfig> implements Conf
     }
 
     @Override
-    public void onConfigUpdated(Config config) {
-        updateState(config).ifPresent(depConfig -> onSourceConfigUpdated(depConfig, config));
+    public void onConfigUpdated(Config config, ConfigChange change) {
+        updateState(config).ifPresent(depConfig -> onSourceConfigUpdated(depConfig, config, change));
     }
 
     @Override
@@ -43,7 +44,7 @@ abstract class DependentConfigListener<T extends AbstractConfig> implements Conf
 
     public abstract void onSourceConfigAdded(T dependentConfig, Config sourceConfig);
     public abstract void onSourceConfigRemoved(T dependentConfig, Config sourceConfig);
-    public abstract void onSourceConfigUpdated(T dependentConfig, Config sourceConfig);
+    public abstract void onSourceConfigUpdated(T dependentConfig, Config sourceConfig, ConfigChange change);
     public abstract void onSourceError(Throwable error, T dependentConfig, Config sourceConfig);
 
     /**
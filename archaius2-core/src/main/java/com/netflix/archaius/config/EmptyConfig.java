@@ -20,6 +20,8 @@ import java.util.Iterator;
 import java.util.Optional;
 import java.util.function.BiConsumer;
 
+import com.netflix.archaius.api.Config;
+
 public final class EmptyConfig extends AbstractConfig {
 
     public static final EmptyConfig INSTANCE = new EmptyConfig();
@@ -27,6 +29,12 @@ public final class EmptyConfig extends AbstractConfig {
     private EmptyConfig() {
     }
     
+    @Override
+    public Config snapshot() {
+        // Already immutable
+        return this;
+    }
+
     @Override
     public boolean containsKey(String key) {
         return false;
@@ -23,6 +23,8 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.function.BiConsumer;
 
+import com.netflix.archaius.api.Config;
+
 /**
  * Config backed by an immutable map.
  */
@@ -116,6 +118,12 @@ public class MapConfig extends AbstractConfig {
         return props.get(key);
     }
 
+    @Override
+    public Config snapshot() {
+        // Already immutable
+        return this;
+    }
+
     @Override
     public boolean containsKey(String key) {
         return props.containsKey(key);
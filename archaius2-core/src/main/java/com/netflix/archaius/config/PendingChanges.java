@@ -0,0 +1,57 @@
+package com.netflix.archaius.config;
+
+import com.netflix.archaius.api.ConfigChange;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Changes to a composite's children that are deferred while a batch of updates is in progress, so that the merged
+ * state is rebuilt and listeners are notified once when the outermost batch completes.  Not thread safe, a batch is
+ * confined to the thread applying it.
+ */
+final class PendingChanges {
+    private int depth;
+    private boolean rebuild;
+    private Set<String> keys = new HashSet<>();
+
+    void open() {
+        depth++;
+    }
+
+    /**
+     * @return True if the outermost batch was closed and the pending changes should be applied
+     */
+    boolean close() {
+        return --depth == 0;
+    }
+
+    boolean isOpen() {
+        return depth > 0;
+    }
+
+    /**
+     * Record that children were added or removed, which requires the state to be rebuilt
+     */
+    void childrenChanged() {
+        rebuild = true;
+    }
+
+    void childUpdated(ConfigChange change) {
+        if (!change.isKnown()) {
+            rebuild = true;
+        } else if (!rebuild) {
+            keys.addAll(change.getKeys());
+        }
+    }
+
+    /**
+     * @return Combined change of all children since the last call, which is unknown if the state must be rebuilt
+     */
+    ConfigChange drain() {
+        ConfigChange change = rebuild ? ConfigChange.unknown() : ConfigChange.of(keys);
+        rebuild = false;
+        keys = new HashSet<>();
+        return change;
+    }
+}
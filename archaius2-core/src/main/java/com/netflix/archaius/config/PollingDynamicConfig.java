@@ -26,6 +26,8 @@ import java.util.function.BiConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
 import com.netflix.archaius.api.config.PollingStrategy;
 import com.netflix.archaius.api.PropertyDetails;
 import com.netflix.archaius.config.polling.PollingResponse;
@@ -71,6 +73,11 @@ public class PollingDynamicConfig extends AbstractConfig {
         });
     }
 
+    @Override
+    public Config snapshot() {
+        return new SnapshotConfig(this, Collections.unmodifiableMap(current));
+    }
+
     @Override
     public boolean containsKey(String key) {
         return current.containsKey(key);
@@ -102,9 +109,10 @@ public class PollingDynamicConfig extends AbstractConfig {
             try {
                 PollingResponse response = reader.call();
                 if (response.hasData()) {
+                    Map<String, String> previous = current;
                     current = Collections.unmodifiableMap(response.getToAdd());
                     currentIds = Collections.unmodifiableMap(response.getNameToIdsMap());
-                    notifyConfigUpdated(this);
+                    notifyConfigUpdated(this, ConfigChange.between(previous, current));
                 }
             }
             catch (Exception e) {
@@ -15,17 +15,23 @@
  */
 package com.netflix.archaius.config;
 
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 import com.netflix.archaius.api.Config;
-import com.netflix.archaius.api.ConfigListener;
+import com.netflix.archaius.api.ConfigChange;
 import com.netflix.archaius.api.Decoder;
 import com.netflix.archaius.api.PropertyDetails;
 import com.netflix.archaius.api.StrInterpolator;
 import com.netflix.archaius.api.StrInterpolator.Lookup;
 import com.netflix.archaius.interpolate.ConfigStrLookup;
+import com.netflix.archaius.util.PersistentMap;
 
 /**
  * View into another Config for properties starting with a specified prefix.
@@ -37,9 +43,32 @@ public class PrefixedViewConfig extends AbstractDependentConfig {
     private final Config config;
     private final String prefix;
     private final Lookup nonPrefixedLookup;
+    private final DependentConfigListener<PrefixedViewConfig> sourceListener;
+    /**
+     * Registry of the source config if this is the canonical view shared by all callers of getPrefixedView, or null
+     * once the view was customized
+     */
+    private volatile PrefixedViewRegistry registry;
     private volatile CachedState state;
+    /**
+     * Source keys looked up while interpolating each key of this view whose value references another property, as
+     * of the last time the key or one of the keys it was interpolated from changed.  Guarded by this.
+     */
+    private final Map<String, Set<String>> references = new HashMap<>();
+    /** Reverse index of references, from a source key to the keys of this view interpolated from it.  Guarded by this. */
+    private final Map<String, Set<String>> referencedBy = new HashMap<>();
+    /**
+     * Keys of this view whose value failed to interpolate, such as due to a circular reference, which could involve
+     * any of the source's keys.  Guarded by this.
+     */
+    private final Set<String> unresolved = new HashSet<>();
+    /** True if the source config was instrumented when the state was last rebuilt */
+    private boolean instrumented;
 
-    /** Listener to update the state of the PrefixedViewConfig on any changes in the source config. */
+    /**
+     * Listener to update the state of the PrefixedViewConfig on any changes in the source config and then propagate
+     * the event, with keys relative to the prefix, to our own listeners.
+     */
     private static class PrefixedViewConfigListener extends DependentConfigListener<PrefixedViewConfig> {
         private PrefixedViewConfigListener(PrefixedViewConfig pvc) {
             super(pvc);
@@ -48,49 +77,190 @@ public class PrefixedViewConfig extends AbstractDependentConfig {
         @Override
         public void onSourceConfigAdded(PrefixedViewConfig pvc, Config config) {
             pvc.updateState(config);
+            pvc.notifyConfigAdded(pvc);
         }
 
         @Override
         public void onSourceConfigRemoved(PrefixedViewConfig pvc, Config config) {
             pvc.updateState(config);
+            pvc.notifyConfigRemoved(pvc);
         }
 
         @Override
-        public void onSourceConfigUpdated(PrefixedViewConfig pvc, Config config) {
-            pvc.updateState(config);
+        public void onSourceConfigUpdated(PrefixedViewConfig pvc, Config config, ConfigChange change) {
+            ConfigChange viewChange = pvc.applyChange(config, change);
+            if (!viewChange.isEmpty()) {
+                pvc.notifyConfigUpdated(pvc, viewChange);
+            }
         }
 
         @Override
         public void onSourceError(Throwable error, PrefixedViewConfig pvc, Config config) {
+            pvc.notifyError(error, pvc);
         }
     }
     
     public PrefixedViewConfig(final String prefix, final Config config) {
+        this(prefix, config, null);
+    }
+
+    /**
+     * @param registry Registry in which the view is shared or null if it is not shared
+     */
+    PrefixedViewConfig(final String prefix, final Config config, PrefixedViewRegistry registry) {
+        this.registry = registry;
         this.config = config;
         this.prefix = prefix.endsWith(".") ? prefix : prefix + ".";
         this.nonPrefixedLookup = ConfigStrLookup.from(config);
-        this.state = createState(config);
-        this.config.addListener(new PrefixedViewConfigListener(this));
+        updateState(config);
+        this.sourceListener = new PrefixedViewConfigListener(this);
+        this.config.addListener(sourceListener);
+    }
+
+    /**
+     * @return Listener through which this view tracks the source config
+     */
+    DependentConfigListener<PrefixedViewConfig> getSourceListener() {
+        return sourceListener;
+    }
+
+    private synchronized void updateState(Config config) {
+        setState(createState(config), config.instrumentationEnabled());
+    }
+
+    private void setState(CachedState state, boolean instrumented) {
+        references.clear();
+        referencedBy.clear();
+        unresolved.clear();
+        state.getData().forEach(this::trackReferences);
+        this.instrumented = instrumented;
+        this.state = state;
+    }
+
+    /**
+     * @return True if any value in the current state references another property and so may depend on keys outside
+     *      the view
+     */
+    private boolean isInterpolated() {
+        return !references.isEmpty() || !unresolved.isEmpty();
     }
 
-    private void updateState(Config config) {
-        this.state = createState(config);
+    private static boolean isInterpolated(Object value) {
+        return value instanceof String && ((String) value).contains("${");
+    }
+
+    /**
+     * Update the state with a change in the source config and translate it into a change of keys relative to this
+     * view.  Only keys under the prefix are read from the source, unless the affected keys are unknown.  Interpolated 
+     * values in this view are included in the change if they reference any of the changed keys.
+     * 
+     * @return The change to this view, which is empty if neither the values of this view's keys nor values they are
+     *      interpolated from changed
+     */
+    private synchronized ConfigChange applyChange(Config config, ConfigChange change) {
+        CachedState previous = state;
+        if (!change.isKnown() || config.instrumentationEnabled() != instrumented) {
+            setState(createState(config), config.instrumentationEnabled());
+            // Interpolated values may depend on any of the source's keys
+            return isInterpolated() ? ConfigChange.unknown() : state.changesSince(previous);
+        }
+        
+        Set<String> interpolatedFrom = getKeysInterpolatedFrom(change.getKeys());
+        Set<String> keys = new HashSet<>();
+        Map<String, Object> updates = new HashMap<>();
+        for (String key : change.getKeys()) {
+            if (key.startsWith(prefix)) {
+                String viewKey = key.substring(prefix.length());
+                Object value = config.getRawPropertyUninstrumented(key);
+                if (!Objects.equals(value, previous.getData().get(viewKey))) {
+                    keys.add(viewKey);
+                    updates.put(viewKey, value);
+                }
+            }
+        }
+        if (!updates.isEmpty()) {
+            this.state = previous.withUpdates(updates, key -> instrumented ? config : null);
+            updates.forEach(this::trackReferences);
+        }
+        // References change only if one of the keys looked up while interpolating did
+        for (String key : interpolatedFrom) {
+            trackReferences(key, state.getData().get(key));
+        }
+        keys.addAll(interpolatedFrom);
+        return ConfigChange.of(keys, previous.getData(), state.getData());
+    }
+
+    /**
+     * @param sourceKeys Keys of the source config
+     * @return Keys of this view whose value is interpolated from any of the source keys, or could not be interpolated
+     */
+    private Set<String> getKeysInterpolatedFrom(Set<String> sourceKeys) {
+        Set<String> keys = new HashSet<>(unresolved);
+        for (String sourceKey : sourceKeys) {
+            keys.addAll(referencedBy.getOrDefault(sourceKey, Collections.emptySet()));
+        }
+        return keys;
+    }
+
+    /**
+     * Record the source keys that the value of a key of this view is interpolated from, replacing those recorded for
+     * its previous value
+     */
+    private void trackReferences(String key, Object value) {
+        Set<String> previous = references.remove(key);
+        if (previous != null) {
+            for (String sourceKey : previous) {
+                Set<String> keys = referencedBy.get(sourceKey);
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    referencedBy.remove(sourceKey);
+                }
+            }
+        }
+        unresolved.remove(key);
+        if (!isInterpolated(value)) {
+            return;
+        }
+
+        Set<String> referenced = new HashSet<>();
+        try {
+            getStrInterpolator().create(k -> {
+                referenced.add(k);
+                Object raw = config.getRawPropertyUninstrumented(k);
+                return raw == null ? null : raw.toString();
+            }).resolve((String) value);
+        } catch (RuntimeException e) {
+            unresolved.add(key);
+            return;
+        }
+        references.put(key, referenced);
+        for (String sourceKey : referenced) {
+            referencedBy.computeIfAbsent(sourceKey, k -> new HashSet<>()).add(key);
+        }
     }
 
     private CachedState createState(Config config) {
-        Map<String, Object> data = new LinkedHashMap<>();
-        Map<String, Config> instrumentedKeys = new LinkedHashMap<>();
+        PersistentMap.Builder<String, Object> data = PersistentMap.builder();
+        PersistentMap.Builder<String, Config> instrumentedKeys = PersistentMap.builder();
         boolean instrumented = config.instrumentationEnabled();
-        config.forEachPropertyUninstrumented((k, v) -> {
-            if (k.startsWith(prefix)) {
-                String key = k.substring(prefix.length());
-                data.put(key, v);
-                if (instrumented) {
-                    instrumentedKeys.put(key, config);
-                }
+        BiConsumer<String, Object> consumer = (k, v) -> {
+            String key = k.substring(prefix.length());
+            data.put(key, v);
+            if (instrumented) {
+                instrumentedKeys.put(key, config);
             }
-        });
-        return new CachedState(data, instrumentedKeys);
+        };
+        if (config instanceof AbstractConfig) {
+            // Only visits keys under the prefix when the source config has a sorted key index
+            ((AbstractConfig) config).forEachPropertyWithPrefixUninstrumented(prefix, consumer);
+        } else {
+            config.forEachPropertyUninstrumented((k, v) -> {
+                if (k.startsWith(prefix)) {
+                    consumer.accept(k, v);
+                }
+            });
+        }
+        return new CachedState(data.build(), instrumentedKeys.build());
     }
 
     @Override
@@ -112,28 +282,44 @@ public class PrefixedViewConfig extends AbstractDependentConfig {
         return nonPrefixedLookup; 
     }
 
+    /**
+     * The view's keys are taken from a snapshot of the source config, against which values are also interpolated as
+     * they are for the live view
+     */
+    @Override
+    public Config snapshot() {
+        Config source = config.snapshot();
+        return new SnapshotConfig(this, createState(source).getData(), source);
+    }
+
     @Override
     public synchronized void setDecoder(Decoder decoder) {
+        if (decoder != getDecoder()) {
+            unshare();
+        }
         super.setDecoder(decoder);
         config.setDecoder(decoder);
     }
 
     @Override
     public synchronized void setStrInterpolator(StrInterpolator interpolator) {
+        if (interpolator != getStrInterpolator()) {
+            unshare();
+        }
         super.setStrInterpolator(interpolator);
         config.setStrInterpolator(interpolator);
     }
 
-    @Override
-    public synchronized void addListener(ConfigListener listener) {
-        super.addListener(listener);
-        config.addListener(listener);
-    }
-
-    @Override
-    public synchronized void removeListener(ConfigListener listener) {
-        super.removeListener(listener);
-        config.removeListener(listener);
+    /**
+     * Stop sharing a view that is being customized so that callers of getPrefixedView from now on get a new view
+     * with the defaults instead of this one
+     */
+    private void unshare() {
+        PrefixedViewRegistry registry = this.registry;
+        if (registry != null) {
+            this.registry = null;
+            registry.release(prefix, this);
+        }
     }
 
     @Override
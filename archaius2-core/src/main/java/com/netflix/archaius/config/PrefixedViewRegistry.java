@@ -0,0 +1,93 @@
+package com.netflix.archaius.config;
+
+import com.netflix.archaius.api.Config;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical prefixed views of a config, so that repeated calls to {@link Config#getPrefixedView(String)} share a
+ * single view and its state.  Views are only weakly referenced and once collected their listener is removed from
+ * the source config, rather than waiting for the next change to the source.  A view whose decoder or interpolator
+ * is changed is released from the registry, so that the change doesn't apply to later callers.
+ */
+final class PrefixedViewRegistry {
+    private final AbstractConfig source;
+    private final ConcurrentMap<String, ViewReference> views = new ConcurrentHashMap<>();
+    private final ReferenceQueue<PrefixedViewConfig> collected = new ReferenceQueue<>();
+
+    PrefixedViewRegistry(AbstractConfig source) {
+        this.source = source;
+    }
+
+    /**
+     * @param prefix Prefix ending with '.'
+     * @return The live view for the prefix, creating it if no view exists or the previous one was collected
+     */
+    PrefixedViewConfig get(String prefix) {
+        removeCollected();
+
+        ViewReference ref = views.get(prefix);
+        PrefixedViewConfig view = ref != null ? ref.get() : null;
+        if (view != null) {
+            return view;
+        }
+
+        // Created outside of the map since the view registers a listener on the source, which may re-enter it
+        PrefixedViewConfig created = new PrefixedViewConfig(prefix, source, this);
+        ViewReference createdRef = new ViewReference(prefix, created, collected);
+        while (true) {
+            if (ref == null ? views.putIfAbsent(prefix, createdRef) == null : views.replace(prefix, ref, createdRef)) {
+                return created;
+            }
+            ref = views.get(prefix);
+            view = ref != null ? ref.get() : null;
+            if (view != null) {
+                // Lost the race to another caller
+                source.removeListener(created.getSourceListener());
+                return view;
+            }
+        }
+    }
+
+    /**
+     * Stop sharing the view for the prefix.  The view keeps its listener on the source until it is collected.
+     */
+    void release(String prefix, PrefixedViewConfig view) {
+        ViewReference ref = views.get(prefix);
+        if (ref != null && ref.get() == view) {
+            views.remove(prefix, ref);
+        }
+    }
+
+    /**
+     * @return Number of views that have not been garbage collected
+     */
+    int getLiveViewCount() {
+        removeCollected();
+        return views.size();
+    }
+
+    private void removeCollected() {
+        Reference<? extends PrefixedViewConfig> ref;
+        while ((ref = collected.poll()) != null) {
+            ViewReference viewRef = (ViewReference) ref;
+            views.remove(viewRef.prefix, viewRef);
+            source.removeListener(viewRef.listener);
+        }
+    }
+
+    private static final class ViewReference extends WeakReference<PrefixedViewConfig> {
+        private final String prefix;
+        private final DependentConfigListener<PrefixedViewConfig> listener;
+
+        ViewReference(String prefix, PrefixedViewConfig view, ReferenceQueue<PrefixedViewConfig> queue) {
+            super(view, queue);
+            this.prefix = prefix;
+            this.listener = view.getSourceListener();
+        }
+    }
+}
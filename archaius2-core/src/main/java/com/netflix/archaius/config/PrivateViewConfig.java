@@ -15,14 +15,17 @@
  */
 package com.netflix.archaius.config;
 
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
 import com.netflix.archaius.api.ConfigListener;
 import com.netflix.archaius.api.Decoder;
 import com.netflix.archaius.api.StrInterpolator;
+import com.netflix.archaius.util.PersistentMap;
 
 /**
  * View into another Config that allows usage of a private {@link Decoder}, {@link StrInterpolator}, and
@@ -51,9 +54,11 @@ public class PrivateViewConfig extends AbstractDependentConfig {
         }
 
         @Override
-        public void onSourceConfigUpdated(PrivateViewConfig pvc, Config config) {
-            pvc.updateState(config);
-            pvc.notifyConfigUpdated(pvc);
+        public void onSourceConfigUpdated(PrivateViewConfig pvc, Config config, ConfigChange change) {
+            ConfigChange viewChange = pvc.applyChange(config, change);
+            if (!viewChange.isEmpty()) {
+                pvc.notifyConfigUpdated(pvc, viewChange);
+            }
         }
 
         @Override
@@ -62,14 +67,43 @@ public class PrivateViewConfig extends AbstractDependentConfig {
     }
 
     private volatile CachedState state;
+    /** True if the source config was instrumented when the state was last rebuilt */
+    private boolean instrumented;
 
-    private void updateState(Config config) {
+    private synchronized void updateState(Config config) {
+        this.instrumented = config.instrumentationEnabled();
         this.state = createState(config);
     }
 
+    /**
+     * Update the state with a change in the source config.  Only the changed keys are read from the source, unless 
+     * the affected keys are unknown.
+     * 
+     * @return Keys whose values actually changed, which may be empty
+     */
+    private synchronized ConfigChange applyChange(Config config, ConfigChange change) {
+        CachedState previous = state;
+        if (!change.isKnown() || config.instrumentationEnabled() != instrumented) {
+            updateState(config);
+            return state.changesSince(previous);
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        for (String key : change.getKeys()) {
+            Object value = config.getRawPropertyUninstrumented(key);
+            if (!Objects.equals(value, previous.getData().get(key))) {
+                updates.put(key, value);
+            }
+        }
+        if (!updates.isEmpty()) {
+            this.state = previous.withUpdates(updates, key -> instrumented ? config : null);
+        }
+        return ConfigChange.of(updates.keySet(), previous.getData(), state.getData());
+    }
+
     private CachedState createState(Config config) {
-        Map<String, Object> data = new LinkedHashMap<>();
-        Map<String, Config> instrumentedKeys = new LinkedHashMap<>();
+        PersistentMap.Builder<String, Object> data = PersistentMap.builder();
+        PersistentMap.Builder<String, Config> instrumentedKeys = PersistentMap.builder();
         boolean instrumented = config.instrumentationEnabled();
         config.forEachPropertyUninstrumented((k, v) -> {
             data.put(k, v);
@@ -77,7 +111,7 @@ public class PrivateViewConfig extends AbstractDependentConfig {
                 instrumentedKeys.put(k, config);
             }
         });
-        return new CachedState(data, instrumentedKeys);
+        return new CachedState(data.build(), instrumentedKeys.build());
     }
 
     @Override
@@ -86,7 +120,7 @@ public class PrivateViewConfig extends AbstractDependentConfig {
     }
 
     public PrivateViewConfig(final Config wrappedConfig) {
-        this.state = createState(wrappedConfig);
+        updateState(wrappedConfig);
         wrappedConfig.addListener(new ViewConfigListener(this));
     }
 
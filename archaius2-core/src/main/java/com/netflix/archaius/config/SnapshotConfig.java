@@ -0,0 +1,89 @@
+package com.netflix.archaius.config;
+
+import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.StrInterpolator.Lookup;
+import com.netflix.archaius.interpolate.ConfigStrLookup;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable copy of a config's properties at a point in time.  Values are interpolated against the
+ * snapshot itself, or a snapshot of the config that the source interpolates against, and decoded with
+ * the source config's decoder so that reads from the snapshot are consistent with each other regardless
+ * of concurrent updates to the source.  Reads are not instrumented.
+ */
+final class SnapshotConfig extends AbstractConfig {
+    private final Map<String, Object> data;
+    private final Lookup lookup;
+    private final DecodedValueCache decodedValues = new DecodedValueCache();
+
+    /**
+     * @param source Config from which the snapshot was taken
+     * @param data Immutable map of the source's properties
+     */
+    SnapshotConfig(AbstractConfig source, Map<String, Object> data) {
+        this(source, data, null);
+    }
+
+    /**
+     * @param source Config from which the snapshot was taken
+     * @param data Immutable map of the source's properties
+     * @param lookupSource Snapshot against which values are interpolated, or null to interpolate against this snapshot
+     */
+    SnapshotConfig(AbstractConfig source, Map<String, Object> data, Config lookupSource) {
+        super(source.getName());
+        this.data = data;
+        this.lookup = lookupSource == null ? super.getLookup() : ConfigStrLookup.from(lookupSource);
+        setDecoder(source.getDecoder());
+        setStrInterpolator(source.getStrInterpolator());
+        setListDelimiter(source.getListDelimiter());
+        setDecodeCacheEnabled(source.isDecodeCacheEnabled());
+    }
+
+    @Override
+    protected Lookup getLookup() {
+        return lookup;
+    }
+
+    @Override
+    DecodedValueCache getDecodedValueCache() {
+        return decodedValues;
+    }
+
+    @Override
+    public Config snapshot() {
+        return this;
+    }
+
+    @Override
+    public Object getRawProperty(String key) {
+        return data.get(key);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        return data.keySet().iterator();
+    }
+
+    @Override
+    public Iterable<String> keys() {
+        return data.keySet();
+    }
+
+    @Override
+    public void forEachProperty(BiConsumer<String, Object> consumer) {
+        data.forEach(consumer);
+    }
+}
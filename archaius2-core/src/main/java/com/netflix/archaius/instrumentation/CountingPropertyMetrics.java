@@ -0,0 +1,172 @@
+package com.netflix.archaius.instrumentation;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PropertyMetrics that keeps counters per key, type and derivation in memory.  At most maxEntries
+ * properties are tracked individually, properties created once the limit is reached are all recorded
+ * by the overflow counters so that dynamically created keys can't grow the map without bound.
+ */
+public class CountingPropertyMetrics implements PropertyMetrics {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final ConcurrentMap<Id, Stats> stats = new ConcurrentHashMap<>();
+    private final Stats overflow = new Stats(new Id(null, null, null));
+    private final int maxEntries;
+
+    public CountingPropertyMetrics() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries Maximum number of properties for which separate counters are kept
+     */
+    public CountingPropertyMetrics(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Recorder forProperty(String key, Type type) {
+        return getOrCreate(new Id(key, type, null));
+    }
+
+    @Override
+    public Recorder forDerivedProperty(String key, Type type, String derivation) {
+        return getOrCreate(new Id(key, type, derivation));
+    }
+
+    private Stats getOrCreate(Id id) {
+        Stats existing = stats.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        // The size check is racy so the limit may be exceeded by the number of concurrently created properties
+        if (stats.size() >= maxEntries) {
+            return overflow;
+        }
+        return stats.computeIfAbsent(id, Stats::new);
+    }
+
+    /**
+     * @return Counters for all properties created so far, excluding those recorded by the overflow counters
+     */
+    public Collection<Stats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * @return Counters shared by all properties created after maxEntries properties were tracked.  The key,
+     *      type and derivation of the overflow counters are null.
+     */
+    public Stats getOverflowStats() {
+        return overflow;
+    }
+
+    private static final class Id {
+        private final String key;
+        private final Type type;
+        private final String derivation;
+
+        Id(String key, Type type, String derivation) {
+            this.key = key;
+            this.type = type;
+            this.derivation = derivation;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, type, derivation);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Id)) {
+                return false;
+            }
+            Id other = (Id) obj;
+            return Objects.equals(key, other.key) 
+                    && Objects.equals(type, other.type) 
+                    && Objects.equals(derivation, other.derivation);
+        }
+    }
+
+    public static final class Stats implements Recorder {
+        private final Id id;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder resolveNanos = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        private Stats(Id id) {
+            this.id = id;
+        }
+
+        @Override
+        public void recordHit() {
+            hits.increment();
+        }
+
+        @Override
+        public void recordMiss() {
+            misses.increment();
+        }
+
+        @Override
+        public void recordResolve(long nanos, boolean failed) {
+            resolveNanos.add(nanos);
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+        public String getKey() {
+            return id.key;
+        }
+
+        public Type getType() {
+            return id.type;
+        }
+
+        /**
+         * @return Operations by which the property was derived, such as "orElse.map", or null for the
+         *      property created by the factory
+         */
+        public String getDerivation() {
+            return id.derivation;
+        }
+
+        public long getReadCount() {
+            return hits.sum() + misses.sum();
+        }
+
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+        public long getMissCount() {
+            return misses.sum();
+        }
+
+        public long getResolveTime(TimeUnit units) {
+            return units.convert(resolveNanos.sum(), TimeUnit.NANOSECONDS);
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Stats [key=" + getKey() + ", type=" + getType() + ", derivation=" + getDerivation() + ", reads=" + getReadCount()
+                    + ", misses=" + getMissCount() + ", resolveNanos=" + resolveNanos.sum()
+                    + ", failures=" + getFailureCount() + "]";
+        }
+    }
+}
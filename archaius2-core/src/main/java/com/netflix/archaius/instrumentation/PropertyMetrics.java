@@ -0,0 +1,49 @@
+package com.netflix.archaius.instrumentation;
+
+import java.lang.reflect.Type;
+
+/**
+ * SPI through which {@link com.netflix.archaius.DefaultPropertyFactory} reports how properties are
+ * read and resolved.  A recorder is requested once for each property object, including properties
+ * derived via orElse, orElseGet and map, so implementations should aggregate by key, type and
+ * derivation.  Every read is recorded by the recorder of exactly one property, reading a derived
+ * property is not also recorded for the property it was derived from.  Because keys may be created
+ * dynamically implementations should bound the number of properties they track.
+ * No metrics are collected when no PropertyMetrics is configured.
+ */
+public interface PropertyMetrics {
+    /**
+     * @param key Property key
+     * @param type Property type or null if type information was discarded by map()
+     * @return Recorder for a property
+     */
+    Recorder forProperty(String key, Type type);
+
+    /**
+     * @param key Key of the property created by the factory from which the property was derived
+     * @param type Type of the property created by the factory from which the property was derived
+     * @param derivation Operations by which the property was derived, such as "orElse" or "orElse.map"
+     * @return Recorder for a derived property.  Defaults to the recorder for the key and type.
+     */
+    default Recorder forDerivedProperty(String key, Type type, String derivation) {
+        return forProperty(key, type);
+    }
+
+    interface Recorder {
+        /**
+         * The property was read and its cached value was up to date
+         */
+        void recordHit();
+
+        /**
+         * The property was read or refreshed after being invalidated and had to be resolved
+         */
+        void recordMiss();
+
+        /**
+         * @param nanos Time spent resolving the value, including interpolation and decoding
+         * @param failed True if resolving the value failed, such as when the raw value could not be parsed
+         */
+        void recordResolve(long nanos, boolean failed);
+    }
+}
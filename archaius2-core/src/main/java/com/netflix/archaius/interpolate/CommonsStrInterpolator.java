@@ -28,6 +28,32 @@ public final class CommonsStrInterpolator implements StrInterpolator {
     
     @Override
     public Context create(final Lookup lookup) {
+        return new Context() {
+            private StrSubstitutor sub;
+            
+            @Override
+            public String resolve(String value) {
+                if (value == null || value.indexOf('$') < 0) {
+                    return value;
+                }
+                
+                Template template = Template.of(value);
+                if (template != null) {
+                    String resolved = template.resolve(lookup);
+                    if (resolved != null) {
+                        return resolved;
+                    }
+                }
+                
+                if (sub == null) {
+                    sub = createSubstitutor(lookup);
+                }
+                return sub.replace(value);
+            }
+        };
+    }
+    
+    private static StrSubstitutor createSubstitutor(final Lookup lookup) {
         final StrSubstitutor sub = new StrSubstitutor(
               new StrLookup<String>() {
                   @Override
@@ -36,12 +62,6 @@ public final class CommonsStrInterpolator implements StrInterpolator {
                   }
               }, "${", "}", '$').setValueDelimiter(":");
         sub.setEnableSubstitutionInVariables(true);
-
-        return new Context() {
-            @Override
-            public String resolve(String value) {
-                return sub.replace(value);
-            }
-        };
+        return sub;
     }
 }
@@ -18,6 +18,7 @@ public class ConfigStrLookup implements Lookup {
     
     @Override
     public String lookup(String key) {
+        LookupRecorder.record(config, key);
         Object value = config.getRawProperty(key);
         if (value == null) {
             return null;
@@ -0,0 +1,165 @@
+package com.netflix.archaius.interpolate;
+
+import com.netflix.archaius.api.StrInterpolator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StrInterpolator with the same semantics as {@link CommonsStrInterpolator} without depending on
+ * commons-lang's StrSubstitutor.
+ *
+ * <ul>
+ * <li>${name} is replaced with the value of name, which is itself interpolated</li>
+ * <li>${name:default} is replaced with default, also interpolated, if name has no value</li>
+ * <li>Variables may be nested in names and defaults, such as ${a:${b}} or ${prefix.${env}}</li>
+ * <li>$${name} is an escape for the literal ${name}</li>
+ * <li>Variables without a value and default are left as is</li>
+ * </ul>
+ *
+ * Values without variables are returned without allocating and plain templates are resolved from
+ * a compiled form.  Circular references fail with an IllegalStateException listing the cycle.
+ */
+public final class DefaultStrInterpolator implements StrInterpolator {
+    public static final DefaultStrInterpolator INSTANCE = new DefaultStrInterpolator();
+
+    private static final String PREFIX = "${";
+    private static final char SUFFIX = '}';
+    private static final char ESCAPE = '$';
+    private static final char VALUE_DELIMITER = ':';
+
+    private DefaultStrInterpolator() {
+    }
+
+    @Override
+    public Context create(final Lookup lookup) {
+        return value -> resolve(lookup, value);
+    }
+
+    private static String resolve(Lookup lookup, String value) {
+        if (value == null || value.indexOf(ESCAPE) < 0) {
+            return value;
+        }
+
+        Template template = Template.of(value);
+        if (template != null) {
+            String resolved = template.resolve(lookup);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+
+        StringBuilder buf = new StringBuilder(value);
+        if (substitute(lookup, buf, 0, value.length(), null) == 0) {
+            return value;
+        }
+        return buf.toString();
+    }
+
+    private static boolean isPrefix(StringBuilder buf, int pos, int end) {
+        return pos + 1 < end && buf.charAt(pos) == PREFIX.charAt(0) && buf.charAt(pos + 1) == PREFIX.charAt(1);
+    }
+
+    /**
+     * Replace all variables in buf between offset and offset + length
+     *
+     * @param priorVariables Variables being resolved by enclosing calls, or null for a top level call
+     * @return For a top level call 1 if buf was altered or 0 otherwise, for nested calls the change
+     *      in length of the region
+     */
+    private static int substitute(Lookup lookup, StringBuilder buf, int offset, int length, List<String> priorVariables) {
+        final boolean top = priorVariables == null;
+        boolean altered = false;
+        int lengthChange = 0;
+        int bufEnd = offset + length;
+        int pos = offset;
+        while (pos < bufEnd) {
+            if (!isPrefix(buf, pos, bufEnd)) {
+                pos++;
+            } else if (pos > offset && buf.charAt(pos - 1) == ESCAPE) {
+                // Escaped, drop the escape character and leave the variable as is
+                buf.deleteCharAt(pos - 1);
+                lengthChange--;
+                altered = true;
+                bufEnd--;
+            } else {
+                // Find the matching suffix, skipping over nested variables
+                final int startPos = pos;
+                pos += PREFIX.length();
+                int nestedVarCount = 0;
+                while (pos < bufEnd) {
+                    if (isPrefix(buf, pos, bufEnd)) {
+                        nestedVarCount++;
+                        pos += PREFIX.length();
+                    } else if (buf.charAt(pos) != SUFFIX) {
+                        pos++;
+                    } else if (nestedVarCount > 0) {
+                        nestedVarCount--;
+                        pos++;
+                    } else {
+                        String varNameExpr = buf.substring(startPos + PREFIX.length(), pos);
+                        if (varNameExpr.indexOf(ESCAPE) >= 0) {
+                            StringBuilder bufName = new StringBuilder(varNameExpr);
+                            substitute(lookup, bufName, 0, bufName.length(), null);
+                            varNameExpr = bufName.toString();
+                        }
+                        pos++;
+                        final int endPos = pos;
+
+                        String varName = varNameExpr;
+                        String varDefaultValue = null;
+                        int delimiter = varNameExpr.indexOf(VALUE_DELIMITER);
+                        if (delimiter >= 0) {
+                            varName = varNameExpr.substring(0, delimiter);
+                            varDefaultValue = varNameExpr.substring(delimiter + 1);
+                        }
+
+                        if (priorVariables == null) {
+                            // The region may have shrunk due to escapes
+                            priorVariables = new ArrayList<>();
+                            priorVariables.add(buf.substring(offset, Math.min(offset + length, buf.length())));
+                        }
+                        checkCyclicSubstitution(varName, priorVariables);
+                        priorVariables.add(varName);
+
+                        String varValue = lookup.lookup(varName);
+                        if (varValue == null) {
+                            varValue = varDefaultValue;
+                        }
+                        if (varValue != null) {
+                            final int varLen = varValue.length();
+                            buf.replace(startPos, endPos, varValue);
+                            altered = true;
+                            int change = substitute(lookup, buf, startPos, varLen, priorVariables);
+                            change = change + varLen - (endPos - startPos);
+                            pos += change;
+                            bufEnd += change;
+                            lengthChange += change;
+                        }
+
+                        priorVariables.remove(priorVariables.size() - 1);
+                        break;
+                    }
+                }
+            }
+        }
+        if (top) {
+            return altered ? 1 : 0;
+        }
+        return lengthChange;
+    }
+
+    private static void checkCyclicSubstitution(String varName, List<String> priorVariables) {
+        if (!priorVariables.contains(varName)) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Infinite loop in property interpolation of ")
+                .append(priorVariables.get(0))
+                .append(": ");
+        for (int i = 1; i < priorVariables.size(); i++) {
+            sb.append(priorVariables.get(i)).append("->");
+        }
+        sb.append(varName);
+        throw new IllegalStateException(sb.toString());
+    }
+}
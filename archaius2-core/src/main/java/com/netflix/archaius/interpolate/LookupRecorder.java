@@ -0,0 +1,116 @@
+package com.netflix.archaius.interpolate;
+
+import com.netflix.archaius.api.Config;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the keys looked up via {@link ConfigStrLookup} on the current thread while interpolating,
+ * so that callers caching interpolated values know which keys those values were derived from.
+ * Nested variables are looked up through the same lookup, so the recorded keys include every key
+ * the value transitively depends on.
+ *
+ * <pre>
+ * {@code
+ * LookupRecorder recorder = LookupRecorder.start(config);
+ * try {
+ *     value = config.getString("endpoint");
+ * } finally {
+ *     recorder.stop();
+ * }
+ * recorder.getKeys();
+ * }
+ * </pre>
+ *
+ * Recordings are per thread and may be nested, in which case lookups recorded by the inner
+ * recording are added to the enclosing recording once the inner recording is stopped.
+ */
+public final class LookupRecorder {
+    private static final ThreadLocal<LookupRecorder> CURRENT = new ThreadLocal<>();
+
+    private final Config config;
+    private final LookupRecorder previous;
+    private Set<String> keys = Collections.emptySet();
+    private boolean complete = true;
+
+    private LookupRecorder(Config config, LookupRecorder previous) {
+        this.config = config;
+        this.previous = previous;
+    }
+
+    /**
+     * Start recording lookups made on the current thread
+     * @param config Config whose keys are recorded.  Lookups against any other config mark the
+     *      recording as incomplete since those keys are in a different namespace.
+     */
+    public static LookupRecorder start(Config config) {
+        LookupRecorder recorder = new LookupRecorder(config, CURRENT.get());
+        CURRENT.set(recorder);
+        return recorder;
+    }
+
+    static void record(Config config, String key) {
+        LookupRecorder recorder = CURRENT.get();
+        if (recorder != null) {
+            recorder.add(config, key);
+        }
+    }
+
+    /**
+     * Record lookups that were made earlier, such as while resolving a value that was since cached
+     */
+    public static void record(Config config, Collection<String> keys) {
+        LookupRecorder recorder = CURRENT.get();
+        if (recorder != null) {
+            for (String key : keys) {
+                recorder.add(config, key);
+            }
+        }
+    }
+
+    private void add(Config source, String key) {
+        if (source != config) {
+            complete = false;
+        } else {
+            if (keys.isEmpty()) {
+                keys = new HashSet<>();
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Stop recording and restore any enclosing recording
+     */
+    public void stop() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+            for (String key : keys) {
+                previous.add(config, key);
+            }
+            if (!complete) {
+                previous.complete = false;
+            }
+        }
+    }
+
+    /**
+     * @return Keys of the recorded config that were looked up
+     */
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return False if keys were also looked up in another config, in which case the recorded keys
+     *      don't capture all dependencies
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
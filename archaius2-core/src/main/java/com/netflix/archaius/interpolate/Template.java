@@ -0,0 +1,168 @@
+package com.netflix.archaius.interpolate;
+
+import com.netflix.archaius.api.StrInterpolator.Lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pre-parsed form of a string containing ${name} or ${name:default} variables, so that resolving the
+ * same raw value repeatedly only performs lookups.  Only strings without escaped or nested variables
+ * are compiled, and resolving falls back to the full interpolator whenever a replacement value could
+ * itself be interpolated.  Compiled templates only depend on the raw value so they are cached
+ * globally, up to a bounded number of distinct values beyond which the least recently used are
+ * evicted.
+ */
+final class Template {
+    static final int MAX_CACHED = 10_000;
+
+    /**
+     * Cached in place of values that can't be compiled so they aren't parsed again
+     */
+    private static final Template NOT_COMPILED = new Template(new String[0], new String[0], new String[0]);
+
+    private static final ConcurrentMap<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Values of the cached templates, replaced using the CLOCK algorithm once the cache is full so
+     * that a hit only sets a flag on the entry instead of reordering a shared list
+     */
+    private static final String[] CACHED_VALUES = new String[MAX_CACHED];
+    private static int hand;
+
+    /**
+     * Literal text preceding each variable, plus the trailing text as the last element
+     */
+    private final String[] literals;
+    private final String[] names;
+
+    /**
+     * Default value per variable or null if none was specified
+     */
+    private final String[] defaults;
+
+    private Template(String[] literals, String[] names, String[] defaults) {
+        this.literals = literals;
+        this.names = names;
+        this.defaults = defaults;
+    }
+
+    /**
+     * @return Compiled template for a value containing '$' or null if the value must be resolved by
+     *      the full interpolator
+     */
+    static Template of(String value) {
+        Entry entry = CACHE.get(value);
+        if (entry == null) {
+            entry = new Entry(compile(value));
+            cache(value, entry);
+        } else if (!entry.used) {
+            entry.used = true;
+        }
+        return entry.template == NOT_COMPILED ? null : entry.template;
+    }
+
+    private static void cache(String value, Entry entry) {
+        synchronized (CACHED_VALUES) {
+            if (CACHE.putIfAbsent(value, entry) != null) {
+                return;
+            }
+            // Give templates used since the hand last passed a second chance.  Terminates since flags
+            // are cleared as the hand advances.
+            Entry cached;
+            while (CACHED_VALUES[hand] != null
+                    && (cached = CACHE.get(CACHED_VALUES[hand])) != null
+                    && cached.used) {
+                cached.used = false;
+                hand = (hand + 1) % MAX_CACHED;
+            }
+            if (CACHED_VALUES[hand] != null) {
+                CACHE.remove(CACHED_VALUES[hand]);
+            }
+            CACHED_VALUES[hand] = value;
+            hand = (hand + 1) % MAX_CACHED;
+        }
+    }
+
+    private static Template compile(String value) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> defaults = new ArrayList<>();
+
+        int literalStart = 0;
+        int pos = 0;
+        while ((pos = value.indexOf("${", pos)) >= 0) {
+            if (pos > 0 && value.charAt(pos - 1) == '$') {
+                // Escaped variable
+                return NOT_COMPILED;
+            }
+            int end = value.indexOf('}', pos + 2);
+            if (end < 0) {
+                // Unterminated variable, the remaining text is left as is
+                break;
+            }
+            String expression = value.substring(pos + 2, end);
+            if (expression.indexOf('$') >= 0) {
+                // Nested or escaped variables in the name or default
+                return NOT_COMPILED;
+            }
+
+            literals.add(value.substring(literalStart, pos));
+            int delimiter = expression.indexOf(':');
+            if (delimiter >= 0) {
+                names.add(expression.substring(0, delimiter));
+                defaults.add(expression.substring(delimiter + 1));
+            } else {
+                names.add(expression);
+                defaults.add(null);
+            }
+            pos = end + 1;
+            literalStart = pos;
+        }
+
+        literals.add(value.substring(literalStart));
+        return new Template(
+                literals.toArray(new String[0]),
+                names.toArray(new String[0]),
+                defaults.toArray(new String[0]));
+    }
+
+    /**
+     * @return The resolved value or null if a replacement contains '$', in which case the value
+     *      must be resolved by the full interpolator
+     */
+    String resolve(Lookup lookup) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            sb.append(literals[i]);
+            String replacement = lookup.lookup(names[i]);
+            if (replacement == null) {
+                replacement = defaults[i];
+            }
+            if (replacement == null) {
+                sb.append("${").append(names[i]);
+                if (defaults[i] != null) {
+                    sb.append(':').append(defaults[i]);
+                }
+                sb.append('}');
+            } else if (replacement.indexOf('$') >= 0) {
+                return null;
+            } else {
+                sb.append(replacement);
+            }
+        }
+        sb.append(literals[names.length]);
+        return sb.toString();
+    }
+
+    private static final class Entry {
+        private final Template template;
+        private volatile boolean used;
+
+        Entry(Template template) {
+            this.template = template;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.netflix.archaius.api.Property;
 import com.netflix.archaius.api.PropertyContainer;
 import com.netflix.archaius.api.PropertyListener;
 import com.netflix.archaius.property.ListenerManager.ListenerUpdater;
+import com.netflix.archaius.property.VersionedCell.Versioned;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +31,6 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.AtomicStampedReference;
 import java.util.function.Function;
 
 /**
@@ -143,7 +143,7 @@ public class DefaultPropertyContainer implements PropertyContainer {
                 return false;
             return true;
         }
-        private final AtomicStampedReference<T> cache = new AtomicStampedReference<>(null, -1);
+        private final VersionedCell<T> cache = new VersionedCell<>();
         private final int type;
         private final T defaultValue;
         
@@ -197,25 +197,22 @@ public class DefaultPropertyContainer implements PropertyContainer {
          */
         @Override
         public T get() {
-            int cacheVersion = cache.getStamp();
+            Versioned<T> current = cache.get();
             int latestVersion  = masterVersion.get();
             
-            if (cacheVersion != latestVersion) {
-                T currentValue = cache.getReference();
-                T newValue = null;
-                try {
-                    newValue = resolveCurrent();
-                } catch (Exception e) {
-                    LOG.warn("Unable to get current version of property '{}'", key, e);
-                }
-                
-                if (cache.compareAndSet(currentValue, newValue, cacheVersion, latestVersion)) {
-                    // Slight race condition here but not important enough to warrent locking
-                    lastUpdateTimeInMillis = System.currentTimeMillis();
-                    return firstNonNull(newValue, defaultValue);
-                }
+            if (current.getVersion() == latestVersion) {
+                return firstNonNull(current.getValue(), defaultValue);
             }
-            return firstNonNull(cache.getReference(), defaultValue);
+            
+            T newValue = null;
+            try {
+                newValue = resolveCurrent();
+            } catch (Exception e) {
+                LOG.warn("Unable to get current version of property '{}'", key, e);
+            }
+            
+            lastUpdateTimeInMillis = System.currentTimeMillis();
+            return firstNonNull(cache.publish(newValue, latestVersion), defaultValue);
         }
         
         public long getLastUpdateTime(TimeUnit units) {
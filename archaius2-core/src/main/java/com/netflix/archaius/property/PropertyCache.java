@@ -0,0 +1,241 @@
+package com.netflix.archaius.property;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache of property objects keyed by what they were created from.  A strong cache holds on to
+ * every value for the lifetime of the cache.  A weak cache only holds on to values that are still
+ * referenced elsewhere, such as by application code or by an active subscription, plus a bounded
+ * number of the most recently used values.  Values of a weak cache are otherwise released for
+ * garbage collection and evicted.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public abstract class PropertyCache<K, V> {
+    /**
+     * @return Cache that never evicts values
+     */
+    public static <K, V> PropertyCache<K, V> strong() {
+        return new StrongPropertyCache<>();
+    }
+
+    /**
+     * @param maxRetained Maximum number of values retained while no longer referenced elsewhere.  Values
+     *      are retained in approximate least recently used order.
+     * @return Cache that evicts values once they are no longer referenced and not retained
+     */
+    public static <K, V> PropertyCache<K, V> weak(int maxRetained) {
+        return weak(maxRetained, key -> {});
+    }
+
+    /**
+     * @param maxRetained Maximum number of values retained while no longer referenced elsewhere
+     * @param evictionListener Called with the key of every evicted value, so that state kept elsewhere for the
+     *      key can be released as well
+     * @return Cache that evicts values once they are no longer referenced and not retained
+     */
+    public static <K, V> PropertyCache<K, V> weak(int maxRetained, Consumer<? super K> evictionListener) {
+        return new WeakPropertyCache<>(maxRetained, evictionListener);
+    }
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private PropertyCache() {
+    }
+
+    /**
+     * Return the cached value for the key, creating and caching it if absent
+     */
+    public abstract V computeIfAbsent(K key, Function<K, V> factory);
+
+    /**
+     * @return The cached value for the key or null if absent.  Does not count as a hit or miss.
+     */
+    public abstract V getIfPresent(K key);
+
+    /**
+     * @return Number of values in the cache, including values that were garbage collected but not yet evicted
+     */
+    public abstract int size();
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private static final class StrongPropertyCache<K, V> extends PropertyCache<K, V> {
+        private final ConcurrentMap<K, V> values = new ConcurrentHashMap<>();
+
+        @Override
+        public V computeIfAbsent(K key, Function<K, V> factory) {
+            V value = values.get(key);
+            if (value != null) {
+                super.hits.increment();
+                return value;
+            }
+            super.misses.increment();
+            return values.computeIfAbsent(key, factory);
+        }
+
+        @Override
+        public V getIfPresent(K key) {
+            return values.get(key);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+    }
+
+    private static final class WeakPropertyCache<K, V> extends PropertyCache<K, V> {
+        private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+        private final ReferenceQueue<V> collected = new ReferenceQueue<>();
+        /** Entries of collected values taken from the queue and not yet evicted */
+        private final ConcurrentLinkedQueue<Entry<K, V>> pending = new ConcurrentLinkedQueue<>();
+        private final Consumer<? super K> evictionListener;
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        /**
+         * Entries retained strongly, replaced using the CLOCK algorithm so that a hit only sets a flag
+         * on the entry instead of reordering a shared list.
+         */
+        private final Object[] retainedValues;
+        private final Entry<?, ?>[] retainedEntries;
+        private int hand;
+
+        WeakPropertyCache(int maxRetained, Consumer<? super K> evictionListener) {
+            this.evictionListener = evictionListener;
+            this.retainedValues = new Object[Math.max(0, maxRetained)];
+            this.retainedEntries = new Entry<?, ?>[retainedValues.length];
+        }
+
+        @Override
+        public V computeIfAbsent(K key, Function<K, V> factory) {
+            evictCollected();
+
+            Entry<K, V> entry = entries.get(key);
+            V value = entry != null ? entry.get() : null;
+            if (value != null) {
+                super.hits.increment();
+                if (!entry.used) {
+                    entry.used = true;
+                }
+                return value;
+            }
+
+            super.misses.increment();
+            Object[] created = new Object[1];
+            Entry<K, V> newEntry = entries.compute(key, (k, existing) -> {
+                V current = existing != null ? existing.get() : null;
+                if (current != null) {
+                    created[0] = current;
+                    return existing;
+                }
+                V newValue = factory.apply(k);
+                created[0] = newValue;
+                return new Entry<>(k, newValue, collected);
+            });
+
+            @SuppressWarnings("unchecked")
+            V result = (V) created[0];
+            retain(newEntry, result);
+            return result;
+        }
+
+        @Override
+        public V getIfPresent(K key) {
+            evictCollected();
+
+            Entry<K, V> entry = entries.get(key);
+            return entry != null ? entry.get() : null;
+        }
+
+        @Override
+        public int size() {
+            evictCollected();
+
+            return entries.size();
+        }
+
+        private void retain(Entry<K, V> entry, V value) {
+            if (retainedValues.length == 0) {
+                return;
+            }
+            synchronized (retainedValues) {
+                // Give values used since the hand last passed a second chance.  Terminates since flags
+                // are cleared as the hand advances.
+                while (retainedEntries[hand] != null && retainedEntries[hand].used) {
+                    retainedEntries[hand].used = false;
+                    hand = (hand + 1) % retainedValues.length;
+                }
+                retainedEntries[hand] = entry;
+                retainedValues[hand] = value;
+                hand = (hand + 1) % retainedValues.length;
+            }
+        }
+
+        /**
+         * Evict the entries of collected values.  Reads nothing but the reference queue while it is empty, so
+         * that cache hits don't write shared state.  Only one thread evicts at a time, and an eviction listener
+         * reading from this cache does not evict recursively, while other threads hand their collected entries
+         * to the evicting thread and carry on without waiting.
+         */
+        @SuppressWarnings("unchecked")
+        private void evictCollected() {
+            Reference<? extends V> ref = collected.poll();
+            if (ref == null) {
+                return;
+            }
+            pending.add((Entry<K, V>) ref);
+            
+            // Entries added by a thread that failed to take the flag are evicted by the thread holding it,
+            // which checks again for pending entries after releasing the flag
+            while (!pending.isEmpty() && evicting.compareAndSet(false, true)) {
+                try {
+                    while ((ref = collected.poll()) != null) {
+                        pending.add((Entry<K, V>) ref);
+                    }
+                    Entry<K, V> entry;
+                    while ((entry = pending.poll()) != null) {
+                        if (entries.remove(entry.key, entry)) {
+                            super.evictions.increment();
+                            evictionListener.accept(entry.key);
+                        }
+                    }
+                } finally {
+                    evicting.set(false);
+                }
+            }
+        }
+    }
+
+    private static final class Entry<K, V> extends WeakReference<V> {
+        private final K key;
+        private volatile boolean used;
+
+        Entry(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
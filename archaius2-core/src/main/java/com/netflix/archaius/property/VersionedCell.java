@@ -0,0 +1,97 @@
+package com.netflix.archaius.property;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Cache cell holding a value together with the version for which it was resolved.  The value and
+ * version are published as a single immutable {@link Versioned} entry so a reader always sees a
+ * consistent pair through one volatile read, without allocating.  Only {@link #publish(Object, int)}
+ * allocates, and it never replaces an entry with one for an older version so that once a version has
+ * been observed no older value will be returned.
+ * 
+ * Versions are compared using overflow safe arithmetic and so are expected to be monotonically
+ * incrementing counters.
+ */
+public final class VersionedCell<T> {
+    /**
+     * Version of the entry in a cell to which nothing has been published yet
+     */
+    public static final int UNSET = -1;
+    
+    /**
+     * Immutable pair of a value and the version for which it was resolved
+     */
+    public static final class Versioned<T> {
+        private final T value;
+        private final int version;
+        
+        private Versioned(T value, int version) {
+            this.value = value;
+            this.version = version;
+        }
+        
+        public T getValue() {
+            return value;
+        }
+        
+        public int getVersion() {
+            return version;
+        }
+        
+        @Override
+        public String toString() {
+            return "Versioned [value=" + value + ", version=" + version + "]";
+        }
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<VersionedCell, Versioned> CURRENT = 
+            AtomicReferenceFieldUpdater.newUpdater(VersionedCell.class, Versioned.class, "current");
+    
+    private volatile Versioned<T> current = new Versioned<>(null, UNSET);
+    
+    /**
+     * @return The most recently published entry
+     */
+    public Versioned<T> get() {
+        return current;
+    }
+    
+    /**
+     * @return True if a value was published at least once
+     */
+    public boolean isSet() {
+        return current.version != UNSET;
+    }
+    
+    /**
+     * Publish a value resolved for a version unless an entry for the same or a newer version
+     * has already been published.
+     * 
+     * @param value
+     * @param version
+     * @return The value that is current after the call, which is either the provided value or the
+     *  value for a newer version published by another thread.
+     */
+    @SuppressWarnings("unchecked")
+    public T publish(T value, int version) {
+        Versioned<T> next = null;
+        while (true) {
+            Versioned<T> existing = current;
+            if (existing.version != UNSET && existing.version - version >= 0) {
+                return existing.value;
+            }
+            if (next == null) {
+                next = new Versioned<>(value, version);
+            }
+            if (CURRENT.compareAndSet(this, existing, next)) {
+                return value;
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return current.toString();
+    }
+}
@@ -0,0 +1,259 @@
+package com.netflix.archaius.util;
+
+import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
+import com.netflix.archaius.api.ConfigListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delivers property and config change notifications on an executor instead of the thread
+ * that made the change, so that a slow subscriber does not delay delivery to all others.
+ *
+ * Each subscriber has its own queue which is drained by at most one task at a time, so
+ * notifications to the same subscriber are delivered in order while different subscribers
+ * are notified concurrently.  Bursts of notifications that have not been delivered yet are
+ * conflated: a subscriber only receives the latest property value, and consecutive config
+ * updates for the same child are merged into a single update.
+ */
+public final class CoalescingDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingDispatcher.class);
+
+    private final Executor executor;
+
+    /**
+     * Queue per subscriber.  A queue is only present while it has a drain task scheduled or running.
+     */
+    private final ConcurrentMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder dispatchCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public CoalescingDispatcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Deliver a new property value to a subscriber.  Any value not yet delivered to the same
+     * subscriber is replaced.
+     */
+    public <T> void dispatch(Consumer<T> subscriber, T value) {
+        enqueue(subscriber, new ValueEvent<T>(subscriber, value));
+    }
+
+    /**
+     * Deliver a config update to a listener.  Merged with an update for the same child that has
+     * not been delivered yet.
+     */
+    public void dispatchUpdated(ConfigListener listener, Config child, ConfigChange change) {
+        enqueue(listener, new UpdatedEvent(listener, child, change));
+    }
+
+    /**
+     * Deliver any other notification to a listener, in order with its other notifications
+     */
+    public void dispatch(ConfigListener listener, Consumer<ConfigListener> notification) {
+        enqueue(listener, new Event() {
+            @Override
+            void deliver() {
+                notification.accept(listener);
+            }
+        });
+    }
+
+    /**
+     * @return Number of notifications waiting to be delivered
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return Number of notifications delivered, after conflation
+     */
+    public long getDispatchCount() {
+        return dispatchCount.sum();
+    }
+
+    /**
+     * @return Total time notifications waited between being enqueued and delivered
+     */
+    public long getTotalDispatchLatency(TimeUnit units) {
+        return units.convert(totalLatencyNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return Longest time a notification waited between being enqueued and delivered
+     */
+    public long getMaxDispatchLatency(TimeUnit units) {
+        return units.convert(maxLatencyNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    private void enqueue(Object subscriber, Event event) {
+        Mailbox[] created = new Mailbox[1];
+        mailboxes.compute(subscriber, (key, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox(key);
+                created[0] = mailbox;
+            }
+            mailbox.add(event);
+            return mailbox;
+        });
+
+        if (created[0] != null) {
+            try {
+                executor.execute(created[0]);
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Notification executor rejected task, delivering inline", e);
+                created[0].run();
+            }
+        }
+    }
+
+    private void delivered(Event event) {
+        long latency = System.nanoTime() - event.enqueuedNanos;
+        dispatchCount.increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    private abstract static class Event {
+        long enqueuedNanos = System.nanoTime();
+
+        /**
+         * @return Single event equivalent to delivering this event followed by next, or null
+         *      if both must be delivered
+         */
+        Event coalesce(Event next) {
+            return null;
+        }
+
+        abstract void deliver();
+    }
+
+    private static final class ValueEvent<T> extends Event {
+        private final Consumer<T> subscriber;
+        private final T value;
+
+        ValueEvent(Consumer<T> subscriber, T value) {
+            this.subscriber = subscriber;
+            this.value = value;
+        }
+
+        @Override
+        Event coalesce(Event next) {
+            if (next instanceof ValueEvent && ((ValueEvent<?>)next).subscriber == subscriber) {
+                next.enqueuedNanos = enqueuedNanos;
+                return next;
+            }
+            return null;
+        }
+
+        @Override
+        void deliver() {
+            subscriber.accept(value);
+        }
+    }
+
+    private static final class UpdatedEvent extends Event {
+        private final ConfigListener listener;
+        private final Config child;
+        private final ConfigChange change;
+
+        UpdatedEvent(ConfigListener listener, Config child, ConfigChange change) {
+            this.listener = listener;
+            this.child = child;
+            this.change = change;
+        }
+
+        @Override
+        Event coalesce(Event next) {
+            if (next instanceof UpdatedEvent) {
+                UpdatedEvent other = (UpdatedEvent)next;
+                if (other.listener == listener && other.child == child) {
+                    UpdatedEvent merged = new UpdatedEvent(listener, child, ConfigChange.combine(change, other.change));
+                    merged.enqueuedNanos = enqueuedNanos;
+                    return merged;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        void deliver() {
+            if (listener instanceof ConfigChangeListener) {
+                ((ConfigChangeListener) listener).onConfigUpdated(child, change);
+            } else {
+                listener.onConfigUpdated(child);
+            }
+        }
+    }
+
+    private final class Mailbox implements Runnable {
+        private final Object subscriber;
+
+        // Only accessed from within mailboxes.compute(), which serializes access per subscriber
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+
+        Mailbox(Object subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void add(Event event) {
+            Event last = queue.peekLast();
+            if (last != null) {
+                Event merged = last.coalesce(event);
+                if (merged != null) {
+                    queue.pollLast();
+                    queue.addLast(merged);
+                    return;
+                }
+            }
+            queue.addLast(event);
+            queueDepth.incrementAndGet();
+        }
+
+        /**
+         * @return Next event to deliver or null if the queue is empty, in which case this mailbox
+         *      is removed and a new one will be scheduled by the next notification
+         */
+        Event poll() {
+            Event[] next = new Event[1];
+            mailboxes.compute(subscriber, (key, mailbox) -> {
+                next[0] = queue.poll();
+                return next[0] == null ? null : mailbox;
+            });
+            if (next[0] != null) {
+                queueDepth.decrementAndGet();
+            }
+            return next[0];
+        }
+
+        @Override
+        public void run() {
+            Event event;
+            while ((event = poll()) != null) {
+                delivered(event);
+                try {
+                    event.deliver();
+                } catch (Exception e) {
+                    LOG.warn("Failed to deliver notification to {}", subscriber, e);
+                }
+            }
+        }
+    }
+}
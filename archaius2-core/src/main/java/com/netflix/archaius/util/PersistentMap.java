@@ -0,0 +1,626 @@
+package com.netflix.archaius.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Immutable hash map which shares structure between versions.  The map is a hash array mapped trie where each
+ * level consumes 5 bits of the key's hash, so adding, replacing or removing a key only copies the O(log n) nodes
+ * on the path to it while every other node is shared with the previous version.  Keeping previous versions around
+ * is therefore cheap, and {@link #forEachDifference} skips subtrees the versions share.
+ *
+ * The {@link Map} mutators throw UnsupportedOperationException.  Use {@link #plus}, {@link #minus} or a
+ * {@link Builder} to derive a new version.  Keys must not be null.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+    private static final Object NOT_FOUND = new Object();
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    private final int size;
+    private Set<Entry<K, V>> entrySet;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @return The map itself if already a PersistentMap or a PersistentMap with the same entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+        Builder<K, V> builder = builder();
+        map.forEach(builder::put);
+        return builder.build();
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(null, 0);
+    }
+
+    /**
+     * @return Builder starting with the entries of this map, which only copies the nodes it modifies
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(root, size);
+    }
+
+    /**
+     * @return Map with the key set to the value, or this map if the key already had that same value instance
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        Box added = new Box();
+        Node newRoot = (root == null ? BitmapNode.EMPTY : root).put(null, 0, hash(key), key, value, added);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added.value ? size + 1 : size);
+    }
+
+    /**
+     * @return Map without the key, or this map if it does not contain the key
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Box removed = new Box();
+        Node newRoot = root.remove(null, 0, hash(key), key, removed);
+        return removed.value ? new PersistentMap<>(newRoot, size - 1) : this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && key != null && root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    /**
+     * Invoke the consumer with every key that was added, removed or whose value is not equal between the two maps.
+     * Subtrees shared by both maps are skipped, so comparing a map with a version derived from it costs in
+     * proportion to the number of changes.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> void forEachDifference(PersistentMap<K, ?> previous, PersistentMap<K, ?> current, Consumer<? super K> consumer) {
+        diff(previous.root, current.root, 0, (Consumer<Object>) consumer);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Builder which modifies nodes it created in place and copies any other node before modifying it.  Nodes
+     * are no longer modified once {@link #build()} is called, so the builder may continue to be used afterwards.
+     */
+    public static final class Builder<K, V> {
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            Box added = new Box();
+            root = (root == null ? BitmapNode.EMPTY : root).put(edit, 0, hash(key), key, value, added);
+            if (added.value) {
+                size++;
+            }
+            return this;
+        }
+
+        public Builder<K, V> remove(Object key) {
+            if (root != null) {
+                Box removed = new Box();
+                root = root.remove(edit, 0, hash(key), key, removed);
+                if (removed.value) {
+                    size--;
+                }
+            }
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            if (root == null) {
+                return null;
+            }
+            Object value = root.find(0, hash(key), key);
+            return value == NOT_FOUND ? null : (V) value;
+        }
+
+        public boolean containsKey(Object key) {
+            return root != null && root.find(0, hash(key), key) != NOT_FOUND;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PersistentMap<K, V> build() {
+            // Nodes created so far now belong to the map
+            edit = new Object();
+            return size == 0 ? empty() : new PersistentMap<>(root, size);
+        }
+    }
+
+    private static final class Box {
+        boolean value;
+    }
+
+    private abstract static class Node {
+        /**
+         * Builder allowed to modify this node in place or null if the node is immutable
+         */
+        final Object edit;
+
+        Node(Object edit) {
+            this.edit = edit;
+        }
+
+        /**
+         * Keys and values interleaved.  A null key means the value is a child node.
+         */
+        abstract Object[] array();
+
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * @return The modified node, or this if unchanged
+         */
+        abstract Node put(Object edit, int shift, int hash, Object key, Object value, Box added);
+
+        /**
+         * @return The modified node, this if unchanged or null if the node became empty
+         */
+        abstract Node remove(Object edit, int shift, int hash, Object key, Box removed);
+
+        boolean isEditable(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        void forEach(BiConsumer<Object, Object> action) {
+            Object[] array = array();
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        int bitmap;
+        Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+            }
+            return key.equals(k) ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            int bit = bit(hash, shift);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) != 0) {
+                Object k = array[i];
+                Object v = array[i + 1];
+                if (k == null) {
+                    Node child = ((Node) v).put(edit, shift + BITS, hash, key, value, added);
+                    return child == v ? this : set(edit, i + 1, child);
+                }
+                if (key.equals(k)) {
+                    return v == value ? this : set(edit, i + 1, value);
+                }
+                added.value = true;
+                Node child = createNode(edit, shift + BITS, k, v, hash, key, value);
+                BitmapNode node = editable(edit);
+                node.array[i] = null;
+                node.array[i + 1] = child;
+                return node;
+            }
+
+            added.value = true;
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            System.arraycopy(array, i, newArray, i + 2, array.length - i);
+            if (isEditable(edit)) {
+                this.array = newArray;
+                this.bitmap |= bit;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap | bit, newArray);
+        }
+
+        @Override
+        Node remove(Object edit, int shift, int hash, Object key, Box removed) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * index(bit);
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).remove(edit, shift + BITS, hash, key, removed);
+                if (child == v) {
+                    return this;
+                }
+                if (child != null) {
+                    return set(edit, i + 1, child);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            } else {
+                removed.value = true;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            if (isEditable(edit)) {
+                this.array = newArray;
+                this.bitmap ^= bit;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap ^ bit, newArray);
+        }
+
+        private BitmapNode editable(Object edit) {
+            return isEditable(edit) ? this : new BitmapNode(edit, bitmap, array.clone());
+        }
+
+        private BitmapNode set(Object edit, int i, Object value) {
+            BitmapNode node = editable(edit);
+            node.array[i] = value;
+            return node;
+        }
+
+        private static Node createNode(Object edit, int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+            int h1 = hash(k1);
+            if (h1 == h2) {
+                return new CollisionNode(edit, h1, new Object[] { k1, v1, k2, v2 });
+            }
+            Box ignore = new Box();
+            return new BitmapNode(edit, 0, new Object[0])
+                    .put(edit, shift, h1, k1, v1, ignore)
+                    .put(edit, shift, h2, k2, v2, ignore);
+        }
+    }
+
+    /**
+     * Keys whose full hash is equal
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        Object[] array;
+
+        CollisionNode(Object edit, int hash, Object[] array) {
+            super(edit);
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            if (hash != this.hash) {
+                // Nest this node in a bitmap node to distinguish the hashes
+                return new BitmapNode(edit, BitmapNode.bit(this.hash, shift), new Object[] { null, this })
+                        .put(edit, shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = isEditable(edit) ? array : array.clone();
+                newArray[i + 1] = value;
+                return update(edit, newArray);
+            }
+            added.value = true;
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return update(edit, newArray);
+        }
+
+        @Override
+        Node remove(Object edit, int shift, int hash, Object key, Box removed) {
+            int i = hash == this.hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            removed.value = true;
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return update(edit, newArray);
+        }
+
+        private Node update(Object edit, Object[] newArray) {
+            if (isEditable(edit)) {
+                this.array = newArray;
+                return this;
+            }
+            return new CollisionNode(edit, hash, newArray);
+        }
+    }
+
+    private static void diff(Node previous, Node current, int shift, Consumer<Object> consumer) {
+        if (previous == current) {
+            return;
+        }
+        if (previous == null || current == null) {
+            (previous == null ? current : previous).forEach((k, v) -> consumer.accept(k));
+            return;
+        }
+        if (!(previous instanceof BitmapNode) || !(current instanceof BitmapNode)) {
+            diffByLookup(previous, current, shift, consumer);
+            return;
+        }
+
+        BitmapNode a = (BitmapNode) previous;
+        BitmapNode b = (BitmapNode) current;
+        int bits = a.bitmap | b.bitmap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits ^= bit;
+            boolean inA = (a.bitmap & bit) != 0;
+            boolean inB = (b.bitmap & bit) != 0;
+            Object ka = null, va = null, kb = null, vb = null;
+            if (inA) {
+                int i = 2 * a.index(bit);
+                ka = a.array[i];
+                va = a.array[i + 1];
+            }
+            if (inB) {
+                int i = 2 * b.index(bit);
+                kb = b.array[i];
+                vb = b.array[i + 1];
+            }
+
+            if (!inA || !inB) {
+                // Only present in one of the nodes
+                if (inA) {
+                    emit(ka, va, consumer);
+                } else {
+                    emit(kb, vb, consumer);
+                }
+            } else if (ka == null && kb == null) {
+                diff((Node) va, (Node) vb, shift + BITS, consumer);
+            } else if (ka != null && kb != null) {
+                if (!ka.equals(kb)) {
+                    consumer.accept(ka);
+                    consumer.accept(kb);
+                } else if (!Objects.equals(va, vb)) {
+                    consumer.accept(ka);
+                }
+            } else {
+                // A single entry on one side and a child node on the other
+                Object key = ka != null ? ka : kb;
+                Object value = ka != null ? va : vb;
+                Node node = (Node) (ka != null ? vb : va);
+                Object other = node.find(shift + BITS, hash(key), key);
+                if (other == NOT_FOUND || !Objects.equals(value, other)) {
+                    consumer.accept(key);
+                }
+                node.forEach((k, v) -> {
+                    if (!k.equals(key)) {
+                        consumer.accept(k);
+                    }
+                });
+            }
+        }
+    }
+
+    private static void emit(Object key, Object value, Consumer<Object> consumer) {
+        if (key == null) {
+            ((Node) value).forEach((k, v) -> consumer.accept(k));
+        } else {
+            consumer.accept(key);
+        }
+    }
+
+    private static void diffByLookup(Node previous, Node current, int shift, Consumer<Object> consumer) {
+        previous.forEach((k, v) -> {
+            Object other = current.find(shift, hash(k), k);
+            if (other == NOT_FOUND || !Objects.equals(v, other)) {
+                consumer.accept(k);
+            }
+        });
+        current.forEach((k, v) -> {
+            if (previous.find(shift, hash(k), k) == NOT_FOUND) {
+                consumer.accept(k);
+            }
+        });
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        // Bitmap nodes are at most 7 levels deep, plus a level of collision nodes
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = -1;
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root);
+                advance();
+            }
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node.array();
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                if (array[position] == null) {
+                    push((Node) array[position + 1]);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> current = next;
+            advance();
+            return current;
+        }
+    }
+}
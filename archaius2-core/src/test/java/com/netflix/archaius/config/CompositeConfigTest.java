@@ -17,14 +17,26 @@ package com.netflix.archaius.config;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
+import com.netflix.archaius.api.Decoder;
 import com.netflix.archaius.api.config.SettableConfig;
 import com.netflix.archaius.config.polling.ManualPollingStrategy;
 import com.netflix.archaius.config.polling.PollingResponse;
@@ -32,8 +44,11 @@ import com.netflix.archaius.instrumentation.AccessMonitorUtil;
 import com.netflix.archaius.api.PropertyDetails;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 
 import com.netflix.archaius.DefaultConfigLoader;
+import com.netflix.archaius.DefaultDecoder;
 import com.netflix.archaius.cascade.ConcatCascadeStrategy;
 import com.netflix.archaius.api.exceptions.ConfigException;
 import com.netflix.archaius.visitor.PrintStreamVisitor;
@@ -137,6 +152,303 @@ public class CompositeConfigTest {
         config.accept(new PrintStreamVisitor());
     }
     
+    @Test
+    public void snapshotIsUnaffectedByUpdates() throws ConfigException {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("env", "test");
+        settable.setProperty("foo", "${env}-value");
+        com.netflix.archaius.api.config.CompositeConfig composite = new DefaultCompositeConfig();
+        composite.addConfig("settable", settable);
+
+        Config snapshot = composite.snapshot();
+        settable.setProperty("env", "prod");
+        settable.setProperty("bar", "1");
+
+        Assert.assertEquals("test-value", snapshot.getString("foo"));
+        Assert.assertFalse(snapshot.containsKey("bar"));
+        Assert.assertEquals("prod-value", composite.getString("foo"));
+    }
+
+    @Test
+    public void decodedValuesCachedUntilStateReplaced() throws ConfigException {
+        AtomicInteger decodeCount = new AtomicInteger();
+        Decoder countingDecoder = new Decoder() {
+            @Override
+            public <T> T decode(Class<T> type, String encoded) {
+                decodeCount.incrementAndGet();
+                return DefaultDecoder.INSTANCE.decode(type, encoded);
+            }
+        };
+
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("base", "10");
+        settable.setProperty("foo", "${base}0");
+        DefaultCompositeConfig composite = new DefaultCompositeConfig();
+        composite.addConfig("settable", settable);
+        composite.setDecoder(countingDecoder);
+        composite.setDecodeCacheEnabled(true);
+
+        Assert.assertEquals(100, composite.getInteger("foo").intValue());
+        Assert.assertEquals(100, composite.getInteger("foo").intValue());
+        Assert.assertEquals(100L, composite.getLong("foo").longValue());
+        Assert.assertEquals(2, decodeCount.get());
+
+        settable.setProperty("base", "20");
+        Assert.assertEquals(200, composite.getInteger("foo").intValue());
+        Assert.assertEquals(3, decodeCount.get());
+
+        composite.setDecodeCacheEnabled(false);
+        composite.getInteger("foo");
+        composite.getInteger("foo");
+        Assert.assertEquals(5, decodeCount.get());
+    }
+
+    @Test
+    public void shadowedChangesDoNotNotify() throws ConfigException {
+        SettableConfig first = new DefaultSettableConfig();
+        SettableConfig second = new DefaultSettableConfig();
+        first.setProperty("foo", "first");
+        second.setProperty("foo", "second");
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder()
+                .withConfig("first", first)
+                .withConfig("second", second)
+                .build();
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        composite.addListener(listener);
+
+        second.setProperty("foo", "updated");
+        second.setProperty("bar", "added");
+        first.clearProperty("foo");
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.eq(composite), changes.capture());
+        Assert.assertEquals(Collections.singleton("bar"), changes.getAllValues().get(0).getKeys());
+        Assert.assertEquals(Collections.singleton("foo"), changes.getAllValues().get(1).getKeys());
+        Assert.assertEquals("updated", composite.getString("foo"));
+        // Values are those of the composite rather than of the child that changed
+        Assert.assertEquals(Collections.singleton("foo"), changes.getAllValues().get(1).getUpdatedKeys());
+        Assert.assertEquals("first", changes.getAllValues().get(1).getPreviousValue("foo"));
+        Assert.assertEquals("updated", changes.getAllValues().get(1).getCurrentValue("foo"));
+    }
+
+    @Test
+    public void batchUpdatesNotifyOnce() throws ConfigException {
+        SettableConfig existing = new DefaultSettableConfig();
+        existing.setProperty("foo", "existing");
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder()
+                .withConfig("existing", existing)
+                .build();
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        composite.addListener(listener);
+
+        composite.batchUpdates(config -> {
+            config.addConfig("a", MapConfig.builder().put("a", "1").put("foo", "a").build());
+            config.addConfig("b", MapConfig.builder().put("b", "2").build());
+            config.replaceConfig("b", MapConfig.builder().put("b", "3").build());
+            existing.setProperty("bar", "existing");
+            Assert.assertNull(config.getRawProperty("a"));
+        });
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.eq(composite), changes.capture());
+        Mockito.verify(listener, Mockito.never()).onConfigAdded(Mockito.any());
+        Mockito.verify(listener, Mockito.never()).onConfigRemoved(Mockito.any());
+        Assert.assertEquals(set("a", "b", "bar"), changes.getValue().getKeys());
+        Assert.assertEquals("existing", composite.getString("foo"));
+        Assert.assertEquals("3", composite.getString("b"));
+
+        // Changes outside of a batch notify as before
+        existing.setProperty("baz", "existing");
+        Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.eq(composite), changes.capture());
+    }
+
+    @Test(timeout = 10000)
+    public void batchUpdatesDoNotBlockOtherThreads() throws Exception {
+        SettableConfig settable = new DefaultSettableConfig();
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder()
+                .withConfig("settable", settable)
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            composite.batchUpdates(config -> {
+                Future<?> other = executor.submit(() -> {
+                    composite.batchUpdates(c -> settable.setProperty("a", "1"));
+                    return null;
+                });
+                try {
+                    other.get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError("Update from another thread blocked by the batch", e);
+                }
+                Assert.assertEquals("1", config.getString("a"));
+                settable.setProperty("b", "2");
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("1", composite.getString("a"));
+        Assert.assertEquals("2", composite.getString("b"));
+    }
+
+    @Test(timeout = 10000)
+    public void listenersAreNotifiedWithoutHoldingTheMonitor() throws Exception {
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder().build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            composite.addListener(new DefaultConfigListener() {
+                @Override
+                public void onConfigUpdated(Config config) {
+                    if (composite.getConfig("b") == null) {
+                        Future<?> other = executor.submit(() -> {
+                            composite.replaceConfig("b", MapConfig.builder().put("b", "2").build());
+                            return null;
+                        });
+                        try {
+                            other.get(5, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            throw new AssertionError("Update from another thread blocked by the listener", e);
+                        }
+                    }
+                }
+            });
+            LinkedHashMap<String, Config> configs = new LinkedHashMap<>();
+            configs.put("a", MapConfig.builder().put("a", "1").build());
+            composite.replaceConfigs(configs);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("1", composite.getString("a"));
+        Assert.assertEquals("2", composite.getString("b"));
+    }
+
+    @Test
+    public void bulkChangesNotifyOnce() throws ConfigException {
+        SettableConfig first = new DefaultSettableConfig();
+        first.setProperty("foo", "first");
+        com.netflix.archaius.api.config.CompositeConfig composite = new DefaultCompositeConfig();
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        composite.addListener(listener);
+
+        LinkedHashMap<String, Config> configs = new LinkedHashMap<>();
+        configs.put("first", first);
+        configs.put("second", MapConfig.builder().put("foo", "second").put("bar", "second").build());
+        composite.addConfigs(configs);
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.eq(composite), changes.capture());
+        Assert.assertEquals(set("foo", "bar"), changes.getValue().getKeys());
+        Assert.assertEquals("first", composite.getString("foo"));
+
+        configs.put("first", MapConfig.builder().put("foo", "replaced").build());
+        configs.put("second", null);
+        composite.replaceConfigs(configs);
+
+        Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.eq(composite), changes.capture());
+        Mockito.verify(listener, Mockito.never()).onConfigAdded(Mockito.any());
+        Mockito.verify(listener, Mockito.never()).onConfigRemoved(Mockito.any());
+        Assert.assertEquals(set("foo", "bar"), changes.getValue().getKeys());
+        Assert.assertEquals(Collections.singletonList("first"), new ArrayList<>(composite.getConfigNames()));
+        Assert.assertEquals("replaced", composite.getString("foo"));
+        Assert.assertFalse(composite.containsKey("bar"));
+
+        // Replaced configs are no longer tracked
+        first.setProperty("foo", "ignored");
+        Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.eq(composite), changes.capture());
+    }
+
+    @Test
+    public void lazyMergeBuiltOnceOnRead() throws Exception {
+        Config defaults = Mockito.spy(MapConfig.builder().put("a", "default").put("d", "default").build());
+        SettableConfig settable = new DefaultSettableConfig();
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder()
+                .withLazyMerge()
+                .withConfig("defaults", defaults)
+                .withConfig("settable", settable)
+                .build();
+        Assert.assertEquals("default", composite.getString("a"));
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        composite.addListener(listener);
+
+        settable.setProperty("a", "settable");
+        settable.setProperty("b", "settable");
+        settable.setProperty("c", "settable");
+        Mockito.verify(listener, Mockito.times(3)).onConfigUpdated(Mockito.eq(composite), Mockito.any());
+        Mockito.verify(defaults, Mockito.never()).getRawPropertyUninstrumented(Mockito.anyString());
+
+        // Changed keys are looked up without merging
+        Assert.assertEquals("settable", composite.getRawPropertyUninstrumented("b"));
+        Assert.assertEquals("default", composite.getRawPropertyUninstrumented("d"));
+        Mockito.verify(defaults, Mockito.times(1)).getRawPropertyUninstrumented(Mockito.anyString());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> values = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                values.add(executor.submit(() -> composite.getString("a")));
+            }
+            for (Future<String> value : values) {
+                Assert.assertEquals("default", value.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(set("a", "b", "c", "d"), set(composite.keys()));
+        // One lookup for each of the three changed keys while merging
+        Mockito.verify(defaults, Mockito.times(4)).getRawPropertyUninstrumented(Mockito.anyString());
+    }
+
+    @Test
+    public void viewsOfLazyCompositeDoNotForceMerge() throws ConfigException {
+        Config defaults = Mockito.spy(MapConfig.builder().put("foo.a", "default").build());
+        SettableConfig settable = new DefaultSettableConfig();
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder()
+                .withLazyMerge()
+                .withConfig("defaults", defaults)
+                .withConfig("settable", settable)
+                .build();
+        Config view = composite.getPrefixedView("foo");
+        Assert.assertEquals("default", view.getString("a"));
+        Assert.assertFalse(composite.instrumentationEnabled());
+
+        // Keys outside the view are neither read by the view nor merged
+        settable.setProperty("other", "settable");
+        Mockito.verify(defaults, Mockito.never()).getRawPropertyUninstrumented("other");
+
+        settable.setProperty("foo.b", "settable");
+        Assert.assertEquals("settable", view.getString("b"));
+    }
+
+    @Test
+    public void lazyChildrenAreMergedAsSources() throws ConfigException {
+        Config defaults = Mockito.spy(MapConfig.builder().put("a", "default").build());
+        SettableConfig override = new DefaultSettableConfig();
+        com.netflix.archaius.api.config.CompositeConfig application = DefaultCompositeConfig.builder()
+                .withLazyMerge()
+                .withConfig("defaults", defaults)
+                .withConfig("override", override)
+                .build();
+        SettableConfig runtime = new DefaultSettableConfig();
+        com.netflix.archaius.api.config.CompositeConfig root = DefaultCompositeConfig.builder()
+                .withConfig("runtime", runtime)
+                .withConfig("application", application)
+                .build();
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        root.addListener(listener);
+
+        // Merged once into the root from the sources, without merging the application layer
+        override.setProperty("b", "override");
+        Mockito.verify(defaults, Mockito.times(1)).getRawPropertyUninstrumented("b");
+        Assert.assertEquals("override", root.getString("b"));
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.eq(root), Mockito.any());
+
+        // Sources added to the lazy child are picked up by the root
+        application.addConfig("extra", MapConfig.builder().put("c", "extra").build());
+        Assert.assertEquals("extra", root.getString("c"));
+        Assert.assertEquals("default", root.getString("a"));
+        Assert.assertEquals("override", application.getString("b"));
+        Assert.assertEquals(set("a", "b", "c"), set(root.keys()));
+    }
+
     @Test
     public void getKeysTest() throws ConfigException {
         com.netflix.archaius.api.config.CompositeConfig composite = new DefaultCompositeConfig();
@@ -2,6 +2,8 @@ package com.netflix.archaius.config;
 
 import com.netflix.archaius.Layers;
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
 import com.netflix.archaius.api.ConfigListener;
 import com.netflix.archaius.api.PropertyDetails;
 import com.netflix.archaius.api.config.LayeredConfig;
@@ -12,15 +14,22 @@ import com.netflix.archaius.config.polling.PollingResponse;
 import com.netflix.archaius.instrumentation.AccessMonitorUtil;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.netflix.archaius.TestUtils.set;
 import static com.netflix.archaius.TestUtils.size;
@@ -83,6 +92,131 @@ public class DefaultLayeredConfigTest {
         Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.any());
     }
     
+    @Test
+    public void onlyChangedKeysAreMergedAgain() {
+        ConfigListener listener = Mockito.mock(ConfigListener.class);
+        LayeredConfig config = new DefaultLayeredConfig();
+
+        SettableConfig override = new DefaultSettableConfig();
+        SettableConfig application = new DefaultSettableConfig();
+        application.setProperty("a", "app");
+        application.setProperty("b", "app");
+        config.addConfig(Layers.RUNTIME, override);
+        config.addConfig(Layers.APPLICATION, application);
+        config.addListener(listener);
+
+        // Changes shadowed by a higher layer don't change the merged value
+        override.setProperty("a", "override");
+        application.setProperty("a", "app2");
+        Assert.assertEquals("override", config.getString("a"));
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.any());
+
+        // Removing the override exposes the lower layer
+        override.clearProperty("a");
+        Assert.assertEquals("app2", config.getString("a"));
+        Assert.assertEquals("app", config.getString("b"));
+        Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.any());
+
+        application.clearProperty("a");
+        Assert.assertFalse(config.containsKey("a"));
+        Assert.assertEquals(set("b"), set(config.keys()));
+        Mockito.verify(listener, Mockito.times(3)).onConfigUpdated(Mockito.any());
+    }
+
+    @Test
+    public void addAndRemoveNotifyChangedKeys() {
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        LayeredConfig config = new DefaultLayeredConfig();
+        config.addConfig(Layers.APPLICATION, MapConfig.builder().put("a", "app").put("b", "app").build());
+        config.addListener(listener);
+
+        config.addConfig(Layers.RUNTIME, MapConfig.builder().name("runtime").put("a", "runtime").put("b", "app").build());
+        config.removeConfig(Layers.RUNTIME, "runtime");
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        verify(listener, times(2)).onConfigUpdated(eq(config), changes.capture());
+        verify(listener, Mockito.never()).onConfigUpdated(any());
+        Assert.assertEquals(set("a"), changes.getAllValues().get(0).getKeys());
+        Assert.assertEquals(set("a"), changes.getAllValues().get(1).getKeys());
+        Assert.assertEquals("app", config.getString("a"));
+    }
+
+    @Test
+    public void batchUpdatesNotifyOnce() {
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        LayeredConfig config = new DefaultLayeredConfig();
+        SettableConfig application = new DefaultSettableConfig();
+        application.setProperty("a", "app");
+        config.addConfig(Layers.APPLICATION, application);
+        config.addListener(listener);
+
+        config.batchUpdates(layered -> {
+            SettableConfig runtime = new DefaultSettableConfig();
+            runtime.setProperty("a", "runtime");
+            layered.addConfig(Layers.RUNTIME, runtime);
+            layered.addConfig(Layers.DEFAULT, MapConfig.builder().put("b", "default").build());
+            application.setProperty("c", "app");
+            Assert.assertEquals("app", layered.getString("a"));
+        });
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        verify(listener, times(1)).onConfigUpdated(eq(config), changes.capture());
+        verify(listener, Mockito.never()).onConfigUpdated(any());
+        Assert.assertEquals(set("a", "b", "c"), changes.getValue().getKeys());
+        Assert.assertEquals("runtime", config.getString("a"));
+        Assert.assertEquals("default", config.getString("b"));
+        Assert.assertEquals("app", config.getString("c"));
+    }
+
+    @Test(timeout = 10000)
+    public void batchUpdatesDoNotBlockOtherThreads() throws Exception {
+        LayeredConfig config = new DefaultLayeredConfig();
+        SettableConfig settable = new DefaultSettableConfig();
+        config.addConfig(Layers.RUNTIME, settable);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            config.batchUpdates(layered -> {
+                Future<?> other = executor.submit(
+                        () -> config.batchUpdates(l -> settable.setProperty("a", "1")));
+                try {
+                    other.get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError("Update from another thread blocked by the batch", e);
+                }
+                Assert.assertEquals("1", layered.getString("a"));
+                settable.setProperty("b", "2");
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("1", config.getString("a"));
+        Assert.assertEquals("2", config.getString("b"));
+    }
+
+    @Test
+    public void replaceConfigsSwapsLayer() {
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        LayeredConfig config = new DefaultLayeredConfig();
+        config.addConfig(Layers.APPLICATION, MapConfig.builder().put("a", "app").put("b", "app").build());
+        config.addConfigs(Layers.REMOTE, Arrays.asList(
+                MapConfig.builder().name("remote1").put("a", "remote1").build(),
+                MapConfig.builder().name("remote2").put("a", "remote2").put("c", "remote2").build()));
+        Assert.assertEquals("remote2", config.getString("a"));
+        config.addListener(listener);
+
+        config.replaceConfigs(Layers.REMOTE, Collections.singletonList(
+                MapConfig.builder().name("remote3").put("b", "remote3").build()));
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        verify(listener, times(1)).onConfigUpdated(eq(config), changes.capture());
+        verify(listener, Mockito.never()).onConfigUpdated(any());
+        Assert.assertEquals(set("a", "b", "c"), changes.getValue().getKeys());
+        Assert.assertEquals(1, config.getConfigsAtLayer(Layers.REMOTE).size());
+        Assert.assertEquals("app", config.getString("a"));
+        Assert.assertEquals("remote3", config.getString("b"));
+        Assert.assertFalse(config.containsKey("c"));
+    }
+
     @Test
     public void validateApiWhenRemovingChild() {
         // Setup main config
@@ -1,10 +1,15 @@
 package com.netflix.archaius.config;
 
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
 import com.netflix.archaius.api.config.SettableConfig;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 import static com.netflix.archaius.TestUtils.set;
@@ -36,6 +41,87 @@ public class DefaultSettableConfigTest {
         Assert.assertEquals(set("prop1", "prop2", "prop4", "prop5"), set(config.getKeys()));
     }
 
+    @Test
+    public void changesIncludeValues() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("updated", "before");
+        config.setProperty("removed", "before");
+        ConfigChangeListener first = Mockito.mock(ConfigChangeListener.class);
+        ConfigChangeListener second = Mockito.mock(ConfigChangeListener.class);
+        config.addListener(first);
+        config.addListener(second);
+
+        config.setProperty("added", "after");
+        config.setProperty("updated", "after");
+        config.clearProperty("removed");
+        Properties props = new Properties();
+        props.put("added", "again");
+        props.put("new", "value");
+        config.setProperties(props);
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        Mockito.verify(first, Mockito.times(4)).onConfigUpdated(Mockito.eq(config), changes.capture());
+        List<ConfigChange> values = changes.getAllValues();
+
+        Assert.assertEquals(set("added"), values.get(0).getAddedKeys());
+        Assert.assertEquals(set("updated"), values.get(1).getUpdatedKeys());
+        Assert.assertEquals("before", values.get(1).getPreviousValue("updated"));
+        Assert.assertEquals("after", values.get(1).getCurrentValue("updated"));
+        Assert.assertEquals(set("removed"), values.get(2).getRemovedKeys());
+        Assert.assertTrue(values.get(2).getAddedKeys().isEmpty());
+        Assert.assertEquals(set("new"), values.get(3).getAddedKeys());
+        Assert.assertEquals(set("added"), values.get(3).getUpdatedKeys());
+        Assert.assertEquals("after", values.get(3).getPreviousValue("added"));
+        for (int i = 1; i < values.size(); i++) {
+            Assert.assertTrue(values.get(i).getVersion() > values.get(i - 1).getVersion());
+        }
+
+        // The same change is shared by all listeners
+        ArgumentCaptor<ConfigChange> secondChanges = ArgumentCaptor.forClass(ConfigChange.class);
+        Mockito.verify(second, Mockito.times(4)).onConfigUpdated(Mockito.eq(config), secondChanges.capture());
+        for (int i = 0; i < values.size(); i++) {
+            Assert.assertSame(values.get(i), secondChanges.getAllValues().get(i));
+        }
+    }
+
+    @Test
+    public void updateNotifiesOnceWithChangedKeys() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("same", "value");
+        config.setProperty("cleared", "value");
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        config.addListener(listener);
+
+        config.update(tx -> tx
+                .set("a", "1")
+                .set("b", "2")
+                .set("b", "3")
+                .set("same", "value")
+                .clear("cleared")
+                .clear("missing"));
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.eq(config), changes.capture());
+        Assert.assertEquals(set("a", "b", "cleared"), changes.getValue().getKeys());
+        Assert.assertEquals(set("cleared"), changes.getValue().getRemovedKeys());
+        Assert.assertEquals(set("a", "b", "same"), set(config.keys()));
+        Assert.assertEquals("3", config.getString("b"));
+
+        // Nothing is published for a transaction without changes or one that fails
+        config.update(tx -> tx.set("a", "1"));
+        try {
+            config.update(tx -> {
+                tx.set("a", "2");
+                throw new IllegalStateException();
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertEquals("1", config.getString("a"));
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.eq(config), Mockito.any());
+    }
+
     @Test
     public void testGetKeysIteratorRemoveThrows() {
         SettableConfig config = new DefaultSettableConfig();
@@ -131,4 +131,26 @@ public class InterpolationTest {
         Assert.assertEquals("${c}", config.resolve("${b:${c}}"));
         
     }
+    
+    @Test
+    public void compiledInterpolations() {
+        Config config = MapConfig.builder()
+                .put("a", "A")
+                .put("b", "${a}")
+                .put("dollar", "$")
+                .build();
+
+        Assert.assertEquals("no variables", config.resolve("no variables"));
+        Assert.assertEquals("cost $5", config.resolve("cost $5"));
+        Assert.assertEquals("x-A-y-A", config.resolve("x-${a}-y-${a}"));
+        Assert.assertEquals("${missing}-A", config.resolve("${missing}-${a}"));
+        Assert.assertEquals("", config.resolve("${missing:}"));
+        Assert.assertEquals("default", config.resolve("${missing:default}"));
+        Assert.assertEquals("A-${unterminated", config.resolve("${a}-${unterminated"));
+        
+        // Replacements that may themselves be interpolated and escapes are handled by the full interpolator
+        Assert.assertEquals("A", config.resolve("${b}"));
+        Assert.assertEquals("${a}", config.resolve("$${a}"));
+        Assert.assertEquals("${a}", config.resolve("${dollar}${a}"));
+    }
 }
@@ -1,9 +1,16 @@
 package com.netflix.archaius.config;
 
+import com.netflix.archaius.DefaultPropertyFactory;
 import com.netflix.archaius.Layers;
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
 import com.netflix.archaius.api.ConfigListener;
+import com.netflix.archaius.api.Decoder;
+import com.netflix.archaius.api.Property;
 import com.netflix.archaius.api.PropertyDetails;
+import com.netflix.archaius.api.PropertySnapshot;
+import com.netflix.archaius.api.StrInterpolator;
 import com.netflix.archaius.api.config.LayeredConfig;
 import com.netflix.archaius.api.config.SettableConfig;
 import com.netflix.archaius.api.exceptions.ConfigException;
@@ -23,6 +30,7 @@ import com.netflix.archaius.config.polling.PollingResponse;
 import com.netflix.archaius.instrumentation.AccessMonitorUtil;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import static com.netflix.archaius.TestUtils.set;
@@ -82,6 +90,67 @@ public class PrefixedViewTest {
         Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.any());
     }
 
+    @Test
+    public void onlyNotifiedOfChangesToViewKeys() throws ConfigException {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("foo.bar", "original");
+        settable.setProperty("foo.plain", "value");
+        settable.setProperty("foo.url", "http://${host}/${foo.bar}");
+        settable.setProperty("host", "localhost");
+
+        com.netflix.archaius.api.config.CompositeConfig config = DefaultCompositeConfig.builder()
+                .withConfig("settable", settable)
+                .build();
+
+        Config prefix = config.getPrefixedView("foo");
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        prefix.addListener(listener);
+
+        settable.setProperty("other", "value");
+        settable.setProperty("foo.plain", "value");
+        Mockito.verify(listener, Mockito.never()).onConfigUpdated(Mockito.any(), Mockito.any(ConfigChange.class));
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        settable.setProperty("host", "remote");
+        settable.setProperty("foo.bar", "new");
+        settable.setProperty("foo.baz", "added");
+        settable.clearProperty("foo.baz");
+        Mockito.verify(listener, Mockito.times(4)).onConfigUpdated(Mockito.eq(prefix), changes.capture());
+        Assert.assertEquals(set("url"), changes.getAllValues().get(0).getKeys());
+        Assert.assertEquals(set("bar", "url"), changes.getAllValues().get(1).getKeys());
+        Assert.assertEquals(set("baz"), changes.getAllValues().get(2).getKeys());
+        Assert.assertEquals(set("baz"), changes.getAllValues().get(3).getKeys());
+
+        Assert.assertEquals("http://remote/new", prefix.getString("url"));
+        Assert.assertEquals(set("bar", "plain", "url"), set(prefix.keys()));
+    }
+
+    @Test
+    public void interpolatedKeysFollowChangedReferences() {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("foo.url", "http://${endpoint}");
+        settable.setProperty("endpoint", "${host}");
+        settable.setProperty("host", "localhost");
+        settable.setProperty("other", "remote");
+
+        Config prefix = settable.getPrefixedView("foo");
+        ConfigChangeListener listener = Mockito.mock(ConfigChangeListener.class);
+        prefix.addListener(listener);
+
+        ArgumentCaptor<ConfigChange> changes = ArgumentCaptor.forClass(ConfigChange.class);
+        settable.setProperty("endpoint", "${other}");
+        settable.setProperty("host", "unused");
+        settable.setProperty("other", "changed");
+        Mockito.verify(listener, Mockito.times(2)).onConfigUpdated(Mockito.eq(prefix), changes.capture());
+        Assert.assertEquals(set("url"), changes.getAllValues().get(0).getKeys());
+        Assert.assertEquals(set("url"), changes.getAllValues().get(1).getKeys());
+        Assert.assertEquals("http://changed", prefix.getString("url"));
+
+        settable.setProperty("foo.url", "plain");
+        settable.setProperty("other", "ignored");
+        Mockito.verify(listener, Mockito.times(3)).onConfigUpdated(Mockito.eq(prefix), changes.capture());
+    }
+
     @Test
     public void trailingDotAllowed() {
         SettableConfig settable = new DefaultSettableConfig();
@@ -106,6 +175,86 @@ public class PrefixedViewTest {
         Assert.assertNull(weakReference.get());
     }
 
+    @Test
+    public void sharedPrefixedViewIsReleasedWhenCustomized() throws ConfigException {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("foo.bar", "${other}");
+        settable.setProperty("other", "value");
+        Config prefix = settable.getPrefixedView("foo");
+
+        // Setting the current values, as a composite with the default decoder does for its children, keeps it shared
+        prefix.setDecoder(prefix.getDecoder());
+        prefix.setStrInterpolator(prefix.getStrInterpolator());
+        Assert.assertSame(prefix, settable.getPrefixedView("foo"));
+
+        Decoder decoder = Mockito.mock(Decoder.class);
+        DefaultCompositeConfig composite = new DefaultCompositeConfig();
+        composite.setDecoder(decoder);
+        composite.addConfig("view", prefix);
+        Assert.assertSame(decoder, prefix.getDecoder());
+        Assert.assertTrue(composite.containsKey("bar"));
+
+        LayeredConfig layered = new DefaultLayeredConfig();
+        layered.setStrInterpolator(Mockito.mock(StrInterpolator.class));
+        Config other = settable.getPrefixedView("foo");
+        layered.addConfig(Layers.APPLICATION, other);
+
+        // Later callers don't see the customized views
+        Config fresh = settable.getPrefixedView("foo");
+        Assert.assertNotSame(prefix, fresh);
+        Assert.assertNotSame(other, fresh);
+        Assert.assertNotSame(decoder, fresh.getDecoder());
+        Assert.assertEquals("value", fresh.getString("bar"));
+    }
+
+    @Test
+    public void snapshotInterpolatesAgainstSource() {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("host", "example.com");
+        settable.setProperty("foo.url", "http://${host}/x");
+        Config view = settable.getPrefixedView("foo");
+
+        Config snapshot = view.snapshot();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(view);
+        Property<String> url = factory.get("url", String.class);
+        PropertySnapshot propertySnapshot = factory.snapshot();
+        settable.setProperty("host", "other.com");
+
+        Assert.assertEquals("http://other.com/x", view.getString("url"));
+        Assert.assertEquals("http://example.com/x", snapshot.getString("url"));
+        Assert.assertFalse(snapshot.containsKey("host"));
+        try (PropertySnapshot.Scope scope = propertySnapshot.pin()) {
+            Assert.assertEquals("http://example.com/x", url.get());
+        }
+    }
+
+    @Test
+    public void prefixedViewsAreShared() throws InterruptedException {
+        DefaultSettableConfig sourceConfig = new DefaultSettableConfig();
+        sourceConfig.setProperty("foo.bar", "value");
+        int listeners = sourceConfig.getListeners().size();
+
+        Config prefix = sourceConfig.getPrefixedView("foo");
+        Assert.assertSame(prefix, sourceConfig.getPrefixedView("foo"));
+        Assert.assertSame(prefix, sourceConfig.getPrefixedView("foo."));
+        Config other = sourceConfig.getPrefixedView("bar");
+        Assert.assertNotSame(prefix, other);
+        Assert.assertEquals(listeners + 2, sourceConfig.getListeners().size());
+        Assert.assertEquals(2, sourceConfig.getLivePrefixedViewCount());
+
+        // Collected views are dropped along with their listener on the source
+        prefix = null;
+        other = null;
+        for (int i = 0; i < 50 && sourceConfig.getLivePrefixedViewCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, sourceConfig.getLivePrefixedViewCount());
+        Assert.assertEquals(listeners, sourceConfig.getListeners().size());
+
+        Assert.assertEquals("value", sourceConfig.getPrefixedView("foo").getString("bar"));
+    }
+
     @Test
     public void testGetKeys() {
         Config config = MapConfig.builder()
@@ -124,6 +273,30 @@ public class PrefixedViewTest {
         Assert.assertTrue(keySet.contains("prop2"));
     }
 
+    @Test
+    public void prefixedViewOfCompositeOnlyIncludesKeysUnderPrefix() throws ConfigException {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("fo", "outside");
+        settable.setProperty("foo", "outside");
+        settable.setProperty("foo.a", "1");
+        settable.setProperty("foo.b.c", "2");
+        settable.setProperty("foo/", "outside");
+        settable.setProperty("fooa.b", "outside");
+        settable.setProperty("z", "outside");
+        com.netflix.archaius.api.config.CompositeConfig composite = DefaultCompositeConfig.builder()
+                .withConfig("settable", settable)
+                .build();
+
+        Config view = composite.getPrefixedView("foo");
+        Assert.assertEquals(set("a", "b.c"), set(view.keys()));
+        Assert.assertEquals(set("c"), set(view.getPrefixedView("b").keys()));
+
+        settable.setProperty("foo.d", "3");
+        Assert.assertEquals(set("a", "b.c", "d"), set(view.keys()));
+
+        Assert.assertEquals(set("foo.a", "foo.b.c", "foo.d"), set(composite.getKeys("foo.")));
+    }
+
     @Test
     public void testGetKeysIteratorRemoveThrows() {
         Config config = MapConfig.builder()
@@ -104,6 +104,24 @@ public class PrivateViewTest {
         Mockito.verify(listener, Mockito.times(1)).onConfigAdded(Mockito.any());
         Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.any());
     }
+
+    @Test
+    public void notNotifiedWhenValuesAreUnchanged() throws ConfigException {
+        SettableConfig settable = new DefaultSettableConfig();
+        settable.setProperty("foo.bar", "original");
+
+        Config privateView = settable.getPrivateView();
+        ConfigListener listener = Mockito.mock(ConfigListener.class);
+        privateView.addListener(listener);
+
+        settable.setProperty("foo.bar", "original");
+        settable.clearProperty("missing");
+        Mockito.verify(listener, Mockito.never()).onConfigUpdated(Mockito.any());
+
+        settable.setProperty("foo.baz", "added");
+        Mockito.verify(listener, Mockito.times(1)).onConfigUpdated(Mockito.any());
+        Assert.assertEquals(set("foo.bar", "foo.baz"), set(privateView.keys()));
+    }
     @Test
     public void unusedPrivateViewIsGarbageCollected() {
         SettableConfig sourceConfig = new DefaultSettableConfig();
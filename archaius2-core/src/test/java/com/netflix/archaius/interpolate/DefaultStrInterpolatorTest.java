@@ -0,0 +1,153 @@
+package com.netflix.archaius.interpolate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.lang3.text.StrLookup;
+import org.apache.commons.lang3.text.StrSubstitutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.archaius.api.StrInterpolator;
+import com.netflix.archaius.api.StrInterpolator.Lookup;
+
+/**
+ * Verifies that DefaultStrInterpolator produces the same output as commons-lang's StrSubstitutor configured the
+ * way CommonsStrInterpolator configures it.  The substitutor is used directly since CommonsStrInterpolator shares
+ * the Template fast path with DefaultStrInterpolator.
+ */
+public class DefaultStrInterpolatorTest {
+    private static final String[] VALUES = {
+        "",
+        "plain",
+        "cost $5",
+        "$",
+        "$$",
+        "${",
+        "}",
+        "${a}",
+        "x-${a}-y-${b}",
+        "${missing}",
+        "${missing}-${a}",
+        "${missing:}",
+        "${missing:default}",
+        "${missing:${a}}",
+        "${missing:${missing2:${b}}}",
+        "${a:default}",
+        "${${name}}",
+        "${prefix.${env}}",
+        "${nested}",
+        "${deep}",
+        "$${a}",
+        "$$${a}",
+        "$${a${b}}",
+        "${dollar}${a}",
+        "${a}$",
+        "${a}-${unterminated",
+        "${unterminated ${a}",
+        "${a}}",
+        "{${a}}",
+        "${}",
+        "${:default}",
+        "${a:b:c}",
+        "${escaped}",
+        "${empty}",
+    };
+
+    private static final Map<String, String> PROPERTIES = new HashMap<>();
+    static {
+        PROPERTIES.put("a", "A");
+        PROPERTIES.put("b", "B");
+        PROPERTIES.put("name", "a");
+        PROPERTIES.put("env", "prod");
+        PROPERTIES.put("prefix.prod", "production");
+        PROPERTIES.put("nested", "${a}-${b}");
+        PROPERTIES.put("deep", "${nested}-${missing:${nested}}");
+        PROPERTIES.put("dollar", "$");
+        PROPERTIES.put("escaped", "$${a}");
+        PROPERTIES.put("empty", "");
+    }
+
+    private static String resolve(StrInterpolator interpolator, Lookup lookup, String value) {
+        try {
+            return interpolator.create(lookup).resolve(value);
+        } catch (IllegalStateException e) {
+            return "IllegalStateException";
+        }
+    }
+
+    private static String substitute(Lookup lookup, String value) {
+        StrSubstitutor sub = new StrSubstitutor(new StrLookup<String>() {
+            @Override
+            public String lookup(String key) {
+                return lookup.lookup(key);
+            }
+        }, "${", "}", '$').setValueDelimiter(":");
+        sub.setEnableSubstitutionInVariables(true);
+        try {
+            return sub.replace(value);
+        } catch (IllegalStateException e) {
+            return "IllegalStateException";
+        }
+    }
+
+    private static void assertSameResult(Lookup lookup, String value) {
+        Assert.assertEquals("Resolving '" + value + "'",
+                substitute(lookup, value),
+                resolve(DefaultStrInterpolator.INSTANCE, lookup, value));
+    }
+
+    @Test
+    public void matchesCommonsInterpolator() {
+        for (String value : VALUES) {
+            assertSameResult(PROPERTIES::get, value);
+        }
+    }
+
+    @Test
+    public void matchesCommonsInterpolatorForRandomValues() {
+        Random random = new Random(1234);
+        String[] tokens = { "$", "{", "}", ":", "${", "a", "b", "c", "x" };
+        for (int i = 0; i < 20000; i++) {
+            Map<String, String> properties = new HashMap<>();
+            for (String key : new String[] { "a", "b", "c" }) {
+                if (random.nextBoolean()) {
+                    properties.put(key, randomValue(random, tokens, 6));
+                }
+            }
+            assertSameResult(properties::get, randomValue(random, tokens, 10));
+        }
+    }
+
+    private static String randomValue(Random random, String[] tokens, int maxTokens) {
+        StringBuilder sb = new StringBuilder();
+        int count = random.nextInt(maxTokens + 1);
+        for (int i = 0; i < count; i++) {
+            sb.append(tokens[random.nextInt(tokens.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void circularReferenceFails() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("a", "${b}");
+        properties.put("b", "${a}");
+        try {
+            DefaultStrInterpolator.INSTANCE.create(properties::get).resolve("${a}");
+            Assert.fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Infinite loop in property interpolation of ${a}: a->b->a", e.getMessage());
+        }
+    }
+
+    @Test
+    public void templatesInUseStayCachedWhenFull() {
+        Template hot = Template.of("${hot}");
+        for (int i = 0; i < 2 * Template.MAX_CACHED; i++) {
+            Template.of("${cold" + i + "}");
+            Assert.assertSame(hot, Template.of("${hot}"));
+        }
+    }
+}
@@ -17,6 +17,10 @@ package com.netflix.archaius.property;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -27,15 +31,21 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import com.netflix.archaius.DefaultPropertyFactory;
+import com.netflix.archaius.api.BooleanProperty;
 import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.DoubleProperty;
+import com.netflix.archaius.api.IntProperty;
+import com.netflix.archaius.api.LongProperty;
 import com.netflix.archaius.api.Property;
 import com.netflix.archaius.api.Property.Subscription;
 import com.netflix.archaius.api.PropertyFactory;
 import com.netflix.archaius.api.PropertyListener;
+import com.netflix.archaius.api.PropertySnapshot;
 import com.netflix.archaius.api.config.SettableConfig;
 import com.netflix.archaius.api.exceptions.ConfigException;
 import com.netflix.archaius.config.DefaultSettableConfig;
 import com.netflix.archaius.config.MapConfig;
+import com.netflix.archaius.instrumentation.CountingPropertyMetrics;
 
 public class PropertyTest {
     static class MyService {
@@ -401,10 +411,375 @@ public class PropertyTest {
         Mockito.verify(mapper, Mockito.times(1)).apply("1");
         Mockito.verify(mapper, Mockito.times(1)).apply("2");
         
+        // Unrelated change does not invalidate the cached value
         config.setProperty("bar", "3");
         Assert.assertEquals(2, prop.get().intValue());
         Mockito.verify(mapper, Mockito.times(1)).apply("1");
-        Mockito.verify(mapper, Mockito.times(2)).apply("2");
+        Mockito.verify(mapper, Mockito.times(1)).apply("2");
+    }
+    
+    @Test
+    public void interpolatedPropertyInvalidatedOnReferencedKeyChange() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("env", "test");
+        config.setProperty("foo", "${env}-value");
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        
+        Property<String> prop = factory.get("foo", String.class);
+        Assert.assertEquals("test-value", prop.get());
+        
+        config.setProperty("env", "prod");
+        Assert.assertEquals("prod-value", prop.get());
+        
+        config.setProperty("foo", "plain");
+        Assert.assertEquals("plain", prop.get());
+    }
+    
+    @Test
+    public void interpolatedPropertyOnlyInvalidatedByTransitiveDependencies() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("region", "us-east-1");
+        config.setProperty("host", "api.${region}");
+        config.setProperty("endpoint", "https://${host}/${path:v1}");
+        CountingPropertyMetrics metrics = new CountingPropertyMetrics();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.builder(config).withMetrics(metrics).build();
+        
+        Property<String> prop = factory.get("endpoint", String.class);
+        Assert.assertEquals("https://api.us-east-1/v1", prop.get());
+        
+        config.setProperty("unrelated", "1");
+        Assert.assertEquals("https://api.us-east-1/v1", prop.get());
+        Assert.assertEquals(1, metrics.getStats().iterator().next().getMissCount());
+        
+        config.setProperty("region", "eu-west-1");
+        Assert.assertEquals("https://api.eu-west-1/v1", prop.get());
+        
+        config.setProperty("path", "v2");
+        Assert.assertEquals("https://api.eu-west-1/v2", prop.get());
+        
+        // Dependencies are recorded again whenever the value is resolved
+        config.setProperty("host", "localhost");
+        Assert.assertEquals("https://localhost/v2", prop.get());
+        config.setProperty("region", "us-west-2");
+        Assert.assertEquals("https://localhost/v2", prop.get());
+        Assert.assertEquals(4, metrics.getStats().iterator().next().getMissCount());
+    }
+    
+    @Test
+    public void chainedPropertyInvalidatedOnFallbackKeyChange() {
+        SettableConfig config = new DefaultSettableConfig();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        
+        Property<Integer> prop = factory.get("first", Integer.class).orElseGet("second").orElse(3);
+        Assert.assertEquals(3, prop.get().intValue());
+        
+        config.setProperty("second", 2);
+        Assert.assertEquals(2, prop.get().intValue());
+        
+        config.setProperty("first", 1);
+        Assert.assertEquals(1, prop.get().intValue());
+    }
+    
+    @Test
+    public void subscribersNotifiedForDependentKeys() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("env", "test");
+        config.setProperty("foo", "${env}-value");
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+
+        List<String> interpolated = new ArrayList<>();
+        factory.get("foo", String.class).subscribe(interpolated::add);
+        List<Integer> chained = new ArrayList<>();
+        factory.get("first", Integer.class).orElseGet("second").orElse(3).subscribe(chained::add);
+
+        config.setProperty("unrelated", "1");
+        Assert.assertTrue(interpolated.isEmpty());
+        Assert.assertTrue(chained.isEmpty());
+
+        config.setProperty("env", "prod");
+        Assert.assertEquals(Arrays.asList("prod-value"), interpolated);
+
+        config.setProperty("second", 2);
+        config.setProperty("first", 1);
+        Assert.assertEquals(Arrays.asList(2, 1), chained);
+    }
+
+    @Test
+    public void pinnedSnapshot() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("foo", "1");
+        config.setProperty("bar", "2");
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        
+        Property<Integer> foo = factory.get("foo", Integer.class);
+        Property<Integer> bar = factory.get("baz", Integer.class).orElseGet("bar").map(value -> value * 10);
+        IntProperty primitive = factory.getInt("foo", 0);
+        
+        PropertySnapshot snapshot = factory.snapshot();
+        config.setProperty("foo", "3");
+        config.setProperty("bar", "4");
+        
+        Assert.assertEquals(1, snapshot.get(foo).intValue());
+        try (PropertySnapshot.Scope scope = snapshot.pin()) {
+            Assert.assertEquals(1, foo.get().intValue());
+            Assert.assertEquals(20, bar.get().intValue());
+            Assert.assertEquals(1, primitive.getAsInt());
+            
+            config.setProperty("foo", "5");
+            Assert.assertEquals(1, foo.get().intValue());
+        }
+        
+        Assert.assertEquals(5, foo.get().intValue());
+        Assert.assertEquals(40, bar.get().intValue());
+        Assert.assertEquals(5, primitive.getAsInt());
+    }
+    
+    @Test
+    public void weakPropertyCache() throws InterruptedException {
+        SettableConfig config = new DefaultSettableConfig();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.builder(config).withWeakPropertyCache(0).build();
+        
+        Property<Integer> held = factory.get("held", Integer.class);
+        Assert.assertSame(held, factory.get("held", Integer.class));
+        Assert.assertEquals(1, factory.getPropertyCache().getMissCount());
+        Assert.assertEquals(1, factory.getPropertyCache().getHitCount());
+        
+        List<Integer> values = new ArrayList<>();
+        factory.get("subscribed", Integer.class).subscribe(values::add);
+        
+        // Collected properties are evicted on the next access, even if it only reads from the cache
+        factory.get("unreferenced", Integer.class);
+        for (int i = 0; i < 50 && factory.getPropertyCache().size() > 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, factory.getPropertyCache().size());
+        Assert.assertEquals(1, factory.getPropertyCache().getEvictionCount());
+        Assert.assertSame(held, factory.get("held", Integer.class));
+        
+        // Subscriptions keep the property alive
+        config.setProperty("subscribed", 1);
+        Assert.assertEquals(Arrays.asList(1), values);
+    }
+    
+    @Test
+    public void weakPropertyCacheEvictionListener() throws InterruptedException {
+        List<String> evicted = new ArrayList<>();
+        PropertyCache<String, Object> cache = PropertyCache.weak(1, evicted::add);
+        cache.computeIfAbsent("collected", key -> new Object());
+        // Replaces the collected value as the only retained value
+        Object retained = cache.computeIfAbsent("retained", key -> new Object());
+        Assert.assertSame(retained, cache.getIfPresent("retained"));
+        
+        for (int i = 0; i < 50 && cache.getIfPresent("collected") != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(cache.getIfPresent("collected"));
+        Assert.assertEquals(Arrays.asList("collected"), evicted);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+    
+    @Test
+    public void derivedPropertiesAreCanonical() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("second", "2");
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        Function<Integer, String> mapper = String::valueOf;
+        
+        Property<String> prop = factory.get("first", Integer.class).orElseGet("second").orElse(3).map(mapper);
+        Assert.assertSame(prop, factory.get("first", Integer.class).orElseGet("second").orElse(3).map(mapper));
+        Assert.assertNotSame(prop, factory.get("first", Integer.class).orElseGet("second").orElse(4).map(mapper));
+        Assert.assertEquals("2", prop.get());
+        
+        config.setProperty("second", "5");
+        Assert.assertEquals("5", prop.get());
+    }
+    
+    @Test
+    public void propertyMetrics() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("foo", "1");
+        CountingPropertyMetrics metrics = new CountingPropertyMetrics();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.builder(config).withMetrics(metrics).build();
+        
+        Property<Integer> prop = factory.get("foo", Integer.class);
+        prop.get();
+        prop.get();
+        config.setProperty("foo", "bad");
+        prop.get();
+        
+        CountingPropertyMetrics.Stats stats = metrics.getStats().iterator().next();
+        Assert.assertEquals(1, metrics.getStats().size());
+        Assert.assertEquals("foo", stats.getKey());
+        Assert.assertEquals(Integer.class, stats.getType());
+        Assert.assertEquals(3, stats.getReadCount());
+        Assert.assertEquals(1, stats.getHitCount());
+        Assert.assertEquals(2, stats.getMissCount());
+        Assert.assertEquals(1, stats.getFailureCount());
+    }
+    
+    private static CountingPropertyMetrics.Stats getStats(CountingPropertyMetrics metrics, String key, String derivation) {
+        for (CountingPropertyMetrics.Stats stats : metrics.getStats()) {
+            if (stats.getKey().equals(key) && Objects.equals(stats.getDerivation(), derivation)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("No stats for " + key + " " + derivation);
+    }
+    
+    @Test
+    public void derivedPropertyReadsAreCountedOnce() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("foo", "1");
+        CountingPropertyMetrics metrics = new CountingPropertyMetrics();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.builder(config).withMetrics(metrics).build();
+        
+        Property<Integer> prop = factory.get("foo", Integer.class);
+        Property<String> mapped = prop.orElse(2).map(String::valueOf);
+        Property<Integer> chained = factory.get("bar", Integer.class).orElseGet("foo");
+        Assert.assertEquals("1", mapped.get());
+        Assert.assertEquals("1", mapped.get());
+        Assert.assertEquals(1, chained.get().intValue());
+        
+        Assert.assertEquals(0, getStats(metrics, "foo", null).getReadCount());
+        Assert.assertEquals(0, getStats(metrics, "foo", "orElse").getReadCount());
+        Assert.assertEquals(2, getStats(metrics, "foo", "orElse.map").getReadCount());
+        Assert.assertEquals(0, getStats(metrics, "bar", null).getReadCount());
+        Assert.assertEquals(1, getStats(metrics, "bar", "orElseGet").getReadCount());
+        
+        prop.get();
+        Assert.assertEquals(1, getStats(metrics, "foo", null).getReadCount());
+    }
+    
+    @Test
+    public void propertyMetricsAreBounded() {
+        SettableConfig config = new DefaultSettableConfig();
+        CountingPropertyMetrics metrics = new CountingPropertyMetrics(2);
+        DefaultPropertyFactory factory = DefaultPropertyFactory.builder(config).withMetrics(metrics).build();
+        
+        for (int i = 0; i < 5; i++) {
+            factory.get("key" + i, String.class).get();
+        }
+        
+        Assert.assertEquals(2, metrics.getStats().size());
+        Assert.assertEquals(3, metrics.getOverflowStats().getReadCount());
+        Assert.assertNull(metrics.getOverflowStats().getKey());
+    }
+    
+    @Test
+    public void refreshAndSubscriptionReadsAreNotCounted() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("foo", "1");
+        List<Runnable> tasks = new ArrayList<>();
+        CountingPropertyMetrics metrics = new CountingPropertyMetrics();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.builder(config)
+                .withRefreshExecutor(tasks::add)
+                .withMetrics(metrics)
+                .build();
+        
+        Property<Integer> prop = factory.get("foo", Integer.class);
+        AtomicInteger current = new AtomicInteger();
+        prop.subscribe(current::set);
+        Assert.assertEquals(1, prop.get().intValue());
+        
+        config.setProperty("foo", "2");
+        tasks.remove(0).run();
+        Assert.assertEquals(2, current.get());
+        Assert.assertEquals(2, prop.get().intValue());
+        
+        CountingPropertyMetrics.Stats stats = getStats(metrics, "foo", null);
+        // Values were resolved by the subscription and the refresh, so both reads were hits
+        Assert.assertEquals(2, stats.getReadCount());
+        Assert.assertEquals(2, stats.getHitCount());
+    }
+    
+    @Test
+    public void eagerRefreshOnExecutor() {
+        SettableConfig config = new DefaultSettableConfig();
+        config.setProperty("foo", "1");
+        List<Runnable> tasks = new ArrayList<>();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config, tasks::add);
+        
+        Property<Integer> prop = factory.get("foo", Integer.class);
+        Property<Integer> chained = factory.get("bar", Integer.class).orElseGet("foo").orElse(3);
+        AtomicInteger current = new AtomicInteger();
+        prop.subscribe(current::set);
+        
+        Assert.assertEquals(1, prop.get().intValue());
+        Assert.assertEquals(1, chained.get().intValue());
+        
+        // Previous values are returned until the refresh runs
+        config.setProperty("foo", "2");
+        config.setProperty("foo", "3");
+        Assert.assertEquals(1, tasks.size());
+        Assert.assertEquals(1, prop.get().intValue());
+        Assert.assertEquals(1, chained.get().intValue());
+        Assert.assertEquals(0, current.get());
+        
+        tasks.remove(0).run();
+        Assert.assertEquals(3, prop.get().intValue());
+        Assert.assertEquals(3, chained.get().intValue());
+        Assert.assertEquals(3, current.get());
+    }
+    
+    @Test
+    public void primitiveProperties() {
+        SettableConfig config = new DefaultSettableConfig();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        
+        IntProperty intProp = factory.getInt("int", 1);
+        LongProperty longProp = factory.getLong("long", 2L);
+        DoubleProperty doubleProp = factory.getDouble("double", 3.0);
+        BooleanProperty booleanProp = factory.getBoolean("boolean", true);
+        
+        Assert.assertEquals(1, intProp.getAsInt());
+        Assert.assertEquals(2L, longProp.getAsLong());
+        Assert.assertEquals(3.0, doubleProp.getAsDouble(), 0.0001);
+        Assert.assertTrue(booleanProp.getAsBoolean());
+        Assert.assertEquals(1, intProp.get().intValue());
+        
+        AtomicInteger current = new AtomicInteger();
+        intProp.subscribe(current::set);
+        
+        config.setProperty("int", "10");
+        config.setProperty("long", "20");
+        config.setProperty("double", "30.5");
+        config.setProperty("boolean", "false");
+        
+        Assert.assertEquals(10, intProp.getAsInt());
+        Assert.assertEquals(20L, longProp.getAsLong());
+        Assert.assertEquals(30.5, doubleProp.getAsDouble(), 0.0001);
+        Assert.assertFalse(booleanProp.getAsBoolean());
+        Assert.assertEquals(10, current.get());
+        
+        config.setProperty("int", "bad");
+        Assert.assertEquals(1, intProp.getAsInt());
+        Assert.assertEquals(1, current.get());
+        
+        config.clearProperty("long");
+        Assert.assertEquals(2L, longProp.getAsLong());
+    }
+    
+    @Test
+    public void primitivePropertiesAreCanonical() {
+        SettableConfig config = new DefaultSettableConfig();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        
+        IntProperty intProp = factory.getInt("int", 1);
+        Assert.assertSame(intProp, factory.getInt("int", 1));
+        Assert.assertNotSame(intProp, factory.getInt("int", 2));
+        Assert.assertSame(factory.getBoolean("boolean", true), factory.getBoolean("boolean", true));
+        
+        Property<String> mapped = intProp.map(String::valueOf);
+        Assert.assertEquals("1", mapped.get());
+        Assert.assertEquals(1, intProp.orElse(5).get().intValue());
+        Assert.assertEquals(1, intProp.orElseGet("other").get().intValue());
+        
+        config.setProperty("int", "10");
+        Assert.assertEquals("10", mapped.get());
+        Assert.assertEquals(10, intProp.orElse(5).get().intValue());
     }
     
     @Test(expected=IllegalStateException.class)
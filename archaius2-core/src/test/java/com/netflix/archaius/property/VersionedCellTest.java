@@ -0,0 +1,114 @@
+package com.netflix.archaius.property;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.archaius.property.VersionedCell.Versioned;
+
+public class VersionedCellTest {
+    @Test
+    public void unsetUntilPublished() {
+        VersionedCell<String> cell = new VersionedCell<>();
+        Assert.assertFalse(cell.isSet());
+        Assert.assertEquals(VersionedCell.UNSET, cell.get().getVersion());
+        Assert.assertNull(cell.get().getValue());
+        
+        Assert.assertNull(cell.publish(null, 0));
+        Assert.assertTrue(cell.isSet());
+        Assert.assertEquals(0, cell.get().getVersion());
+    }
+    
+    @Test
+    public void olderVersionIsNotPublished() {
+        VersionedCell<String> cell = new VersionedCell<>();
+        Assert.assertEquals("v2", cell.publish("v2", 2));
+        Assert.assertEquals("v2", cell.publish("v1", 1));
+        Assert.assertEquals("v2", cell.publish("other", 2));
+        Assert.assertEquals("v3", cell.publish("v3", 3));
+        Assert.assertEquals(3, cell.get().getVersion());
+    }
+    
+    @Test
+    public void versionComparisonSurvivesOverflow() {
+        VersionedCell<String> cell = new VersionedCell<>();
+        cell.publish("max", Integer.MAX_VALUE);
+        Assert.assertEquals("wrapped", cell.publish("wrapped", Integer.MAX_VALUE + 1));
+    }
+    
+    /**
+     * Writers race to publish values for an advancing version while readers check that every entry is 
+     * consistent, that versions never go backwards and that no value older than a version already observed
+     * (through the cell or the version counter) is ever returned. 
+     */
+    @Test
+    public void concurrentPublishNeverReturnsStaleValue() throws Exception {
+        VersionedCell<String> cell = new VersionedCell<>();
+        AtomicInteger version = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (!done.get()) {
+                    int observed = version.get();
+                    String value = cell.publish("value-" + observed, observed);
+                    int published = Integer.parseInt(value.substring("value-".length()));
+                    if (published < observed) {
+                        failure.compareAndSet(null, "publish returned " + value + " after observing version " + observed);
+                    }
+                    if (cell.get().getVersion() < observed) {
+                        failure.compareAndSet(null, "cell regressed below observed version " + observed);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                int last = VersionedCell.UNSET;
+                while (!done.get()) {
+                    Versioned<String> entry = cell.get();
+                    if (entry.getVersion() < last) {
+                        failure.compareAndSet(null, "version went from " + last + " to " + entry.getVersion());
+                    }
+                    if (entry.getVersion() != VersionedCell.UNSET && !entry.getValue().equals("value-" + entry.getVersion())) {
+                        failure.compareAndSet(null, "inconsistent entry " + entry);
+                    }
+                    last = entry.getVersion();
+                }
+            }));
+        }
+        
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (int i = 0; i < 20_000; i++) {
+            version.incrementAndGet();
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        Assert.assertNull(failure.get(), failure.get());
+        cell.publish("value-" + version.get(), version.get());
+        Assert.assertEquals(version.get(), cell.get().getVersion());
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.netflix.archaius.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.archaius.DefaultPropertyFactory;
+import com.netflix.archaius.api.Config;
+import com.netflix.archaius.api.ConfigChange;
+import com.netflix.archaius.api.ConfigChangeListener;
+import com.netflix.archaius.api.Property;
+import com.netflix.archaius.config.DefaultSettableConfig;
+
+public class CoalescingDispatcherTest {
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    @Test
+    public void pendingValueIsReplaced() {
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(tasks::add);
+        List<Integer> first = new ArrayList<>();
+        Consumer<Integer> firstSubscriber = first::add;
+        List<Integer> second = new ArrayList<>();
+        Consumer<Integer> secondSubscriber = second::add;
+
+        dispatcher.dispatch(firstSubscriber, 1);
+        dispatcher.dispatch(firstSubscriber, 2);
+        dispatcher.dispatch(secondSubscriber, 3);
+        dispatcher.dispatch(firstSubscriber, 4);
+        Assert.assertEquals(2, tasks.size());
+        Assert.assertEquals(2, dispatcher.getQueueDepth());
+        Assert.assertTrue(first.isEmpty());
+
+        runTasks();
+        Assert.assertEquals(Arrays.asList(4), first);
+        Assert.assertEquals(Arrays.asList(3), second);
+        Assert.assertEquals(0, dispatcher.getQueueDepth());
+        Assert.assertEquals(2, dispatcher.getDispatchCount());
+        Assert.assertTrue(dispatcher.getMaxDispatchLatency(TimeUnit.NANOSECONDS) >= 0);
+
+        // A new task is scheduled once the queue was drained
+        dispatcher.dispatch(firstSubscriber, 5);
+        Assert.assertEquals(1, tasks.size());
+        runTasks();
+        Assert.assertEquals(Arrays.asList(4, 5), first);
+    }
+
+    @Test
+    public void configUpdatesAreMerged() {
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(tasks::add);
+        DefaultSettableConfig config = new DefaultSettableConfig();
+        config.setDispatcher(dispatcher);
+
+        List<String> events = new ArrayList<>();
+        config.addListener(new ConfigChangeListener() {
+            @Override
+            public void onConfigUpdated(Config config, ConfigChange change) {
+                events.add("updated " + new HashSet<>(change.getKeys()));
+            }
+
+            @Override
+            public void onConfigAdded(Config config) {
+            }
+
+            @Override
+            public void onConfigRemoved(Config config) {
+            }
+
+            @Override
+            public void onError(Throwable error, Config config) {
+            }
+        });
+
+        config.setProperty("a", "1");
+        config.setProperty("b", "2");
+        Assert.assertTrue(events.isEmpty());
+        Assert.assertEquals("1", config.getString("a"));
+
+        runTasks();
+        Assert.assertEquals(Arrays.asList("updated " + new HashSet<>(Arrays.asList("a", "b"))), events);
+    }
+
+    @Test
+    public void propertySubscribersNotifiedOnDispatcher() {
+        DefaultSettableConfig config = new DefaultSettableConfig();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(tasks::add);
+        factory.setDispatcher(dispatcher);
+
+        List<Integer> values = new ArrayList<>();
+        factory.get("foo", Integer.class).subscribe(values::add);
+
+        config.setProperty("foo", 1);
+        config.setProperty("foo", 2);
+        Assert.assertTrue(values.isEmpty());
+
+        runTasks();
+        Assert.assertEquals(Arrays.asList(2), values);
+    }
+
+    @Test
+    public void propertiesReadBackWritesWithDispatcher() {
+        DefaultSettableConfig config = new DefaultSettableConfig();
+        DefaultPropertyFactory factory = DefaultPropertyFactory.from(config);
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(tasks::add);
+        config.setDispatcher(dispatcher);
+        factory.setDispatcher(dispatcher);
+
+        Property<Integer> property = factory.get("foo", Integer.class);
+        List<Integer> values = new ArrayList<>();
+        property.subscribe(values::add);
+        Assert.assertNull(property.get());
+
+        config.setProperty("foo", 1);
+        Assert.assertEquals(1, property.get().intValue());
+        config.setProperty("foo", 2);
+        Assert.assertEquals(2, property.get().intValue());
+        Assert.assertTrue(values.isEmpty());
+
+        runTasks();
+        Assert.assertEquals(Arrays.asList(2), values);
+    }
+}
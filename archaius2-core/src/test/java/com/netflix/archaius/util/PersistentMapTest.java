@@ -0,0 +1,149 @@
+package com.netflix.archaius.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentMapTest {
+    /**
+     * Keys with equal hash codes, such as "Aa" and "BB", are included to exercise collision nodes
+     */
+    private static String randomKey(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = 1 + random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            sb.append(random.nextBoolean() ? "Aa" : "BB");
+        }
+        return random.nextInt(4) == 0 ? sb.toString() : sb.append(random.nextInt(5000)).toString();
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(1234);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 50000; i++) {
+            String key = randomKey(random);
+            PersistentMap<String, Integer> previous = map;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+            Assert.assertEquals(expected.get(key), map.get(key));
+
+            if (i % 1000 == 0) {
+                Assert.assertEquals(expected, map);
+                Assert.assertEquals(expected.size(), map.size());
+            }
+            if (i % 100 == 0) {
+                Set<String> differences = new HashSet<>();
+                PersistentMap.forEachDifference(previous, map, differences::add);
+                Assert.assertEquals(previous.equals(map) ? new HashSet<>() : set(key), differences);
+            }
+        }
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(expected, PersistentMap.copyOf(expected));
+    }
+
+    @Test
+    public void previousVersionsAreUnchanged() {
+        PersistentMap<String, String> empty = PersistentMap.empty();
+        PersistentMap<String, String> first = empty.plus("a", "1").plus("Aa", "2");
+        PersistentMap<String, String> second = first.plus("BB", "3").minus("a");
+
+        Assert.assertTrue(empty.isEmpty());
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals("1", first.get("a"));
+        Assert.assertFalse(first.containsKey("BB"));
+        Assert.assertEquals(2, second.size());
+        Assert.assertEquals("3", second.get("BB"));
+        Assert.assertFalse(second.containsKey("a"));
+
+        String value = "2";
+        Assert.assertSame(second, second.plus("Aa", value).plus("Aa", second.get("Aa")));
+        Assert.assertSame(second, second.minus("missing"));
+    }
+
+    @Test
+    public void builderDoesNotModifyBuiltMaps() {
+        Random random = new Random(1234);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap.Builder<String, Integer> builder = PersistentMap.builder();
+        for (int i = 0; i < 5000; i++) {
+            String key = randomKey(random);
+            builder.put(key, i);
+            expected.put(key, i);
+        }
+        PersistentMap<String, Integer> built = builder.build();
+        Map<String, Integer> copy = new HashMap<>(expected);
+
+        for (String key : expected.keySet()) {
+            builder.put(key, -1);
+        }
+        PersistentMap.Builder<String, Integer> derived = built.toBuilder();
+        for (String key : expected.keySet()) {
+            derived.remove(key);
+        }
+
+        Assert.assertEquals(copy, built);
+        Assert.assertEquals(expected.size(), builder.size());
+        Assert.assertTrue(derived.build().isEmpty());
+    }
+
+    @Test
+    public void differencesBetweenUnrelatedMaps() {
+        Map<String, String> a = new HashMap<>();
+        Map<String, String> b = new HashMap<>();
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(1234);
+        for (int i = 0; i < 2000; i++) {
+            String key = randomKey(random);
+            String value = String.valueOf(random.nextInt(3));
+            switch (random.nextInt(3)) {
+                case 0:
+                    a.put(key, value);
+                    break;
+                case 1:
+                    b.put(key, value);
+                    break;
+                default:
+                    a.put(key, value);
+                    b.put(key, new String(value));
+            }
+        }
+        for (String key : a.keySet()) {
+            if (!value(b, key).equals(value(a, key))) {
+                expected.add(key);
+            }
+        }
+        for (String key : b.keySet()) {
+            if (!a.containsKey(key)) {
+                expected.add(key);
+            }
+        }
+
+        Set<String> differences = new HashSet<>();
+        PersistentMap.forEachDifference(PersistentMap.copyOf(a), PersistentMap.copyOf(b), differences::add);
+        Assert.assertEquals(expected, differences);
+    }
+
+    private static String value(Map<String, String> map, String key) {
+        return String.valueOf(map.get(key));
+    }
+
+    private static Set<String> set(String... values) {
+        Set<String> set = new HashSet<>();
+        for (String value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+}
@@ -81,7 +81,7 @@ final class InternalArchaiusModule extends AbstractModule {
     @Singleton
     @LibrariesLayer
     CompositeConfig getLibrariesLayer() {
-        return new DefaultCompositeConfig();
+        return new DefaultCompositeConfig(false, true);
     }
     
     @Singleton
@@ -152,8 +152,10 @@ final class InternalArchaiusModule extends AbstractModule {
     @Provides
     @Singleton
     Config getConfig(ConfigParameters params, @Raw CompositeConfig config, ConfigLoader loader) throws Exception {
-        CompositeConfig applicationLayer = new DefaultCompositeConfig();
-        CompositeConfig remoteLayer = new DefaultCompositeConfig();
+        // Layers that are composites are lazy so that the root merges the configs within them directly, as a single
+        // ordered list of sources, and a change to one of them is merged once into the root
+        CompositeConfig applicationLayer = new DefaultCompositeConfig(false, true);
+        CompositeConfig remoteLayer = new DefaultCompositeConfig(false, true);
         
         config.addConfig(RUNTIME_LAYER_NAME,      params.runtimeLayer);
         config.addConfig(REMOTE_LAYER_NAME,       remoteLayer);
@@ -164,7 +166,7 @@ final class InternalArchaiusModule extends AbstractModule {
         
         // Load defaults layer
         if (params.hasDefaultConfigs()) {
-            CompositeConfig defaultLayer = new DefaultCompositeConfig();
+            CompositeConfig defaultLayer = new DefaultCompositeConfig(false, true);
             config.addConfig(DEFAULT_LAYER_NAME,      defaultLayer);
             for (Config c : params.defaultConfigs) {
                 defaultLayer.addConfig(getUniqueName("default"), c);